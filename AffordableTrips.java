@@ -0,0 +1,311 @@
+/*************************************************************************
+ *  Description: a stream of all trips (simple paths of one or more      *
+ *               routes) that cost max or less, from every origin        *
+ *                                                                       *
+ *  Each origin is searched depth first with an explicit stack, so a     *
+ *  search can stop when it has filled a chunk of trips and resume       *
+ *  later from where it was. A trip is only extended from a city if its  *
+ *  cost plus the cheapest fare out of that city is within max, which    *
+ *  cuts off whole subtrees that the old recursion walked into.          *
+ *                                                                       *
+ *  The searches run as tasks on a fork-join pool, a window of origins   *
+ *  at a time. A task hands over its chunk and returns rather than       *
+ *  blocking, and is resubmitted once the consumer has taken the chunk,  *
+ *  so no pool thread ever waits and memory stays bounded by the window. *
+ *  The consumer (the thread calling hasNext/next) turns the chunks      *
+ *  into Trips, in origin order and, within an origin, in depth first    *
+ *  order, the same order as a sequential search. Formatting is up to    *
+ *  the consumer and never slows the searches down.                      *
+ *                                                                       *
+ *  A search keeps its stack in arrays indexed by depth, grown on demand *
+ *  since affordable trips are short, and marks the cities on its trip   *
+ *  in a bitset, so a search in flight costs V/8 bytes, not 25 per city. *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class AffordableTrips implements Iterator<AffordableTrips.Trip>, AutoCloseable {
+    private static final int CHUNK = 256;       // trips handed over at a time
+    private static final int WINDOW = 4;        // origins in flight per pool thread
+    private static final int DEPTH = 16;        // initial depth of a search stack, it grows as trips get longer
+
+    /* called with each trip, returns false to stop the stream */
+    public interface Listener {
+        public boolean trip(Trip trip);
+    }
+
+    /* a trip, the routes in travel order from its origin and their total price */
+    public static class Trip extends Route {
+        private final int origin;
+
+        public Trip(int origin, double cost, Iterable<Edge> edges){
+            super(cost, edges);
+            this.origin = origin;
+        }
+
+        public int origin() {
+            return origin;
+        }
+    }
+
+    private final CompactGraph G;
+    private final double max;                   // the budget
+    private final double[] cheapest;            // cheapest[v] = lowest fare out of v, a lower bound on any extension
+    private final ForkJoinPool pool;            // null to search on the consumer thread
+    private final LinkedBlockingQueue<Search> ready = new LinkedBlockingQueue<Search>(); // searches with a full chunk
+    private final HashMap<Integer, Search> held = new HashMap<Integer, Search>();       // ready searches of later origins
+    private final ArrayList<Search> spare = new ArrayList<Search>();                    // finished searches for reuse
+    private volatile boolean cancelled;
+    private long left;                          // trips still to deliver
+    private int started;                        // origins handed to a search so far
+    private int turn;                           // origin whose trips are delivered now
+    private Chunk chunk;                        // chunk being delivered
+    private int next;                           // next trip of chunk
+
+    /* stream the trips of G that cost max or less, at most limit of them, searching on pool
+       (or on the calling thread if pool is null) */
+    public AffordableTrips(CompactGraph G, double max, long limit, ForkJoinPool pool) {
+        if (limit < 0) throw new IllegalArgumentException("limit must be non-negative");
+        this.G = G;
+        this.max = max;
+        this.left = limit;
+        this.pool = pool;
+        int V = G.V();
+        cheapest = new double[V];
+        for (int v = 0; v < V; v++) {
+            cheapest[v] = Double.POSITIVE_INFINITY;
+            for (int a = G.begin(v), end = G.end(v); a < end; a++)
+                cheapest[v] = Math.min(cheapest[v], G.price(a));
+        }
+        int window = pool == null ? 1 : WINDOW * pool.getParallelism();
+        if (limit > 0)
+            while (started < V && started < window) start();
+    }
+
+    /* feed every trip to listener until it returns false, return the number of trips fed */
+    public long forEach(Listener listener) {
+        long n = 0;
+        try {
+            while (hasNext()) {
+                n++;
+                if (!listener.trip(next())) break;
+            }
+        } finally {
+            close();
+        }
+        return n;
+    }
+
+    public boolean hasNext() {
+        while (left > 0 && (chunk == null || next == chunk.trips)) {
+            if (!advance()) return false;
+        }
+        return left > 0;
+    }
+
+    public Trip next() {
+        if (!hasNext()) throw new NoSuchElementException("no more trips");
+        left--;
+        int from = next == 0 ? 0 : chunk.ends[next-1], to = chunk.ends[next];
+        ArrayList<Edge> edges = new ArrayList<Edge>(to - from);
+        for (int k = from; k < to; k++)
+            edges.add(G.edge(chunk.arcs[k]));
+        Trip t = new Trip(chunk.origin, chunk.costs[next], edges);
+        next++;
+        if (left == 0) close();
+        return t;
+    }
+
+    /* stop the searches, trips not yet taken are dropped */
+    public void close() {
+        left = 0;
+        cancelled = true;
+        chunk = null;
+    }
+
+    // wait for the next chunk of the current origin, return false when all origins are done
+    private boolean advance() {
+        while (turn < G.V()) {
+            Search s = held.remove(turn);
+            while (s == null) {
+                try {
+                    s = ready.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    return false;
+                }
+                if (s.origin != turn) {
+                    held.put(s.origin, s);
+                    s = null;
+                }
+            }
+            if (s.failure != null) {
+                close();
+                throw new RuntimeException("search of affordable trips from city " + s.origin + " failed", s.failure);
+            }
+
+            // take the chunk, and let the search go on into its other chunk while this one is delivered
+            chunk = s.full;
+            next = 0;
+            if (s.more) {
+                submit(s);
+            } else {
+                turn++;
+                spare.add(s);
+                if (started < G.V()) start();
+            }
+            if (chunk.trips > 0) return true;
+        }
+        chunk = null;
+        return false;
+    }
+
+    // start the search of the next origin
+    private void start() {
+        Search s = spare.isEmpty() ? new Search() : spare.remove(spare.size() - 1);
+        s.reset(started++);
+        submit(s);
+    }
+
+    private void submit(Search s) {
+        if (pool != null) {
+            pool.execute(s);
+        } else {
+            s.run();
+            held.put(s.origin, ready.poll());
+        }
+    }
+
+    /* trips in a compact form, the arcs of trip i are arcs[ends[i-1] .. ends[i]-1] */
+    private static class Chunk {
+        private int origin;
+        private int trips;
+        private int[] arcs = new int[4 * CHUNK];
+        private int[] ends = new int[CHUNK];
+        private double[] costs = new double[CHUNK];
+
+        private void add(int[] path, int length, double cost) {
+            int from = trips == 0 ? 0 : ends[trips-1];
+            if (from + length > arcs.length)
+                arcs = java.util.Arrays.copyOf(arcs, Math.max(2 * arcs.length, from + length));
+            System.arraycopy(path, 0, arcs, from, length);
+            ends[trips] = from + length;
+            costs[trips] = cost;
+            trips++;
+        }
+    }
+
+    /* the depth first search from one origin, resumable between chunks */
+    private class Search implements Runnable {
+        private int origin;
+        private int[] path;             // path[k] = arc taken at depth k
+        private int[] at;               // at[k] = city at depth k
+        private int[] pos;              // pos[k] = next arc to try out of at[k]
+        private double[] cost;          // cost[k] = price of the trip up to at[k]
+        private final long[] marked;    // bit v set if city v is on the current trip
+        private int depth;              // -1 when the search is done
+        private Chunk full;             // chunk handed to the consumer
+        private Chunk filling;          // chunk being filled
+        private boolean more;           // true if the search has more trips
+        private Throwable failure;
+
+        private Search() {
+            path = new int[DEPTH];
+            at = new int[DEPTH];
+            pos = new int[DEPTH];
+            cost = new double[DEPTH];
+            marked = new long[(G.V() + 63) >>> 6];
+            full = new Chunk();
+            filling = new Chunk();
+        }
+
+        private void reset(int s) {
+            origin = s;
+            depth = 0;
+            at[0] = s;
+            pos[0] = G.begin(s);
+            cost[0] = 0;
+            mark(s);
+            if (cheapest[s] > max) {   // no route out of s is affordable
+                unmark(s);
+                depth = -1;
+            }
+        }
+
+        private void mark(int v) {
+            marked[v >>> 6] |= 1L << v;
+        }
+
+        private void unmark(int v) {
+            marked[v >>> 6] &= ~(1L << v);
+        }
+
+        private boolean isMarked(int v) {
+            return (marked[v >>> 6] & (1L << v)) != 0;
+        }
+
+        // double the stack arrays
+        private void grow() {
+            int n = 2 * at.length;
+            path = java.util.Arrays.copyOf(path, n);
+            at = java.util.Arrays.copyOf(at, n);
+            pos = java.util.Arrays.copyOf(pos, n);
+            cost = java.util.Arrays.copyOf(cost, n);
+        }
+
+        public void run() {
+            try {
+                filling.origin = origin;
+                filling.trips = 0;
+                more = search();
+            } catch (Throwable t) {
+                failure = t;
+                more = false;
+            }
+            Chunk c = full;
+            full = filling;
+            filling = c;
+            ready.add(this);
+        }
+
+        // extend trips until the chunk is full, return false when every trip has been found
+        private boolean search() {
+            while (depth >= 0) {
+                if (cancelled) {
+                    while (depth >= 0) unmark(at[depth--]);
+                    return false;
+                }
+                int v = at[depth];
+                if (pos[depth] == G.end(v)) {   // every route out of v is tried, back up
+                    unmark(v);
+                    depth--;
+                    continue;
+                }
+                int a = pos[depth]++;
+                int w = G.target(a);
+                double c = cost[depth] + G.price(a);
+                if (isMarked(w) || c > max) continue;
+
+                path[depth] = a;
+                filling.add(path, depth + 1, c);
+                if (c + cheapest[w] <= max) {  // some trip through w may still be affordable
+                    if (depth + 1 == at.length) grow();
+                    depth++;
+                    at[depth] = w;
+                    pos[depth] = G.begin(w);
+                    cost[depth] = c;
+                    mark(w);
+                }
+                if (filling.trips == CHUNK) return true;
+            }
+            return false;
+        }
+    }
+}
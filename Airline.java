@@ -6,6 +6,11 @@ import java.util.Scanner;
 public class Airline{
     private static Scanner reader;  // read system.in
     private static RouteGraph rg;   // the edge weighted graph storing all routes information
+    private static boolean binary;  // true if the routes were loaded from a binary route file
+    private static final int LANDMARKS = 8; // number of landmarks for the shortest path search
+    private static final int TREES = 32;    // number of shortest path trees kept for repeated origins
+    private static final int TRIPS = 10000; // most affordable trips listed at a time
+    private static final int TRANSFER = 30; // minutes needed to change flights
   
     /* Show the entire list of direct routes, distances and prices. */
     private static void showRoutes(){
@@ -34,7 +39,11 @@ public class Airline{
         System.out.println("1. Total miles");
         System.out.println("2. Price");
         System.out.println("3. Number of hops");
-        System.out.println("Please enter your option number [1-3]:");
+        System.out.println("4. All trade-offs between miles, price and hops");
+        System.out.println("5. Price, with at most N stops");
+        System.out.println("6. Earliest arrival, leaving after a given time");
+        System.out.println("7. Every departure after a given time, by arrival");
+        System.out.println("Please enter your option number [1-7]:");
 
         // read user input
         int option = 0;
@@ -48,6 +57,26 @@ public class Airline{
                             rg.getPriceSP(scity,dcity); break;
                     case 3: System.out.println("\nShortest path by hops:\n");
                             rg.getHopsSP(scity,dcity); break;
+                    case 4: System.out.println("\nRoutes no other route beats on miles, price and hops together:\n");
+                            rg.getParetoSP(scity,dcity); break;
+                    case 5: System.out.println("Please enter the most stops (e.g. 2):");
+                            int stops = Integer.parseInt(reader.nextLine());
+                            if(stops < 0){ System.out.println("\nInvalid input!\n"); break; }
+                            System.out.println("\nShortest path by price with at most "+stops+" stops:\n");
+                            rg.getStopsSP(scity,dcity,stops); break;
+                    case 6: System.out.println("Please enter the earliest departure (e.g. 08:00):");
+                            int time = readTime();
+                            if(time < 0){ System.out.println("\nPlease input a time as hh:mm!\n"); break; }
+                            System.out.println("\nEarliest arrival leaving at "+Timetable.format(time)+" or later:\n");
+                            rg.getEarliestArrival(scity,dcity,time); break;
+                    case 7: System.out.println("Please enter the earliest departure (e.g. 08:00):");
+                            int from = readTime();
+                            if(from < 0){ System.out.println("\nPlease input a time as hh:mm!\n"); break; }
+                            System.out.println("Please enter the latest departure (e.g. 20:00):");
+                            int until = readTime();
+                            if(until < 0){ System.out.println("\nPlease input a time as hh:mm!\n"); break; }
+                            System.out.println("\nDepartures between "+Timetable.format(from)+" and "+Timetable.format(until)+" no later one beats:\n");
+                            rg.getDepartures(scity,dcity,from,until); break;
                     default: System.out.println("\nInvalid input!\n"); break;
                 }
                 System.out.print("Press Enter to continue...");
@@ -62,6 +91,15 @@ public class Airline{
         }
     }
     
+    /* Read a time as hh:mm, -1 if the line is not one */
+    private static int readTime(){
+        try{
+            return Timetable.parse(reader.nextLine().trim());
+        } catch(IllegalArgumentException e){   // a NumberFormatException too
+            return -1;
+        }
+    }
+    
     /* Print out all trips cost X or less, where X is entered by the user */
     private static void showAffordable(){
         System.out.println("---------- Affordable trips ------------");
@@ -72,7 +110,8 @@ public class Airline{
         try{
             x = Double.parseDouble(reader.nextLine());
             System.out.println("Trips cost less than or equal to $"+x+":");
-            rg.getAffordable(x);
+            if(rg.getAffordable(x, TRIPS) == TRIPS)
+                System.out.println("(only the first "+TRIPS+" trips are listed, try a lower amount)");
             System.out.print("Press Enter to continue...");
             reader.nextLine();
         } catch(NumberFormatException e){
@@ -82,6 +121,41 @@ public class Airline{
         
     }
     
+    /* Print every city reachable from a source city for X or less, with its cheapest route */
+    private static void showReachable(){
+        System.out.println("---------- Reachable cities ------------");
+        System.out.println("Please enter source city (e.g. Pittsburgh):");
+        String scity = reader.nextLine();
+        System.out.println("Limit on:");
+        System.out.println("1. Total miles");
+        System.out.println("2. Price");
+        System.out.println("Please enter your option number [1-2]:");
+
+        // read user input
+        try{
+            int option = Integer.parseInt(reader.nextLine());
+            System.out.println("Please enter the limit (e.g. 500):");
+            double x = Double.parseDouble(reader.nextLine());
+            if(!rg.hasCity(scity)){
+                System.out.print("No city matched. Press Enter to continue...");
+                reader.nextLine();
+                return;
+            }
+            switch (option){
+                case 1: System.out.println("\nCities within "+x+" miles of "+scity+":\n");
+                        rg.getReachable(scity,x,0); break;
+                case 2: System.out.println("\nCities reachable from "+scity+" for $"+x+" or less:\n");
+                        rg.getReachable(scity,x,1); break;
+                default: System.out.println("\nInvalid input!\n"); break;
+            }
+            System.out.print("Press Enter to continue...");
+            reader.nextLine();
+        } catch(NumberFormatException e){
+            System.out.print("Please input a number! Press Enter to continue...");
+            reader.nextLine();
+        }
+    }
+    
     /* Add a new route to the schedule. Assume that both cities already exist, and the user enters the vertices, distance, and price for the new route. */
     
     private static void addRoute(){
@@ -143,11 +217,22 @@ public class Airline{
             System.out.println("Please enter output file name (e.g. j-air.txt):");
             outfile=reader.nextLine();
         }
-        rg.write(outfile);
+        // keep the format of the file the routes were loaded from
+        if(binary) rg.writeBinary(outfile);
+        else       rg.write(outfile);
         System.out.println("Successfully save the routes data!");
     }
 
     
+    /* A file next to the routes file, e.g. data.txt -> data.landmarks */
+    private static String sibling(String filename, String extension){
+        int slash = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf(File.separatorChar));
+        int dot = filename.lastIndexOf('.');
+        if(dot <= slash) dot = filename.length();
+        return filename.substring(0, dot) + extension;
+    }
+
+    
     /* Main */
     public static void main(String[] args){
         boolean exit=false;                   // flag for exit the interface
@@ -157,7 +242,17 @@ public class Airline{
         System.out.println("===================== Welcome to J Airline ===================\n");
         System.out.println("Please enter a filename containing all routes (e.g. data.txt):");
         String filename = reader.nextLine();  // read filename
+        try{
+            binary = RouteFile.isBinary(filename);
+        } catch(IOException e){
+            binary = false;                   // let load report the error
+        }
         rg.load(filename);                    // load the information in the input file
+        rg.useLandmarks(LANDMARKS, sibling(filename, ".landmarks")); // goal-directed search tables
+        rg.useTreeCache(TREES);               // answer repeated origins from their shortest path trees
+        String schedule = sibling(filename, ".schedule");
+        if(new File(schedule).exists())
+            rg.loadSchedule(schedule, TRANSFER); // timed flights for the earliest arrival queries
 
         while(!exit){
             int option = 0; // user option
@@ -168,10 +263,11 @@ public class Airline{
             System.out.println("2. Show a minimum spanning tree based on distances");
             System.out.println("3. Find shortest path");
             System.out.println("4. Show trips cost X or less");
-            System.out.println("5. Add a new route");
-            System.out.println("6. Remove a route");
-            System.out.println("7. Quit the program");
-            System.out.println("Please enter your option number [1-7]:");
+            System.out.println("5. Show cities reachable for X or less");
+            System.out.println("6. Add a new route");
+            System.out.println("7. Remove a route");
+            System.out.println("8. Quit the program");
+            System.out.println("Please enter your option number [1-8]:");
 
             // read user input
             try{
@@ -186,9 +282,10 @@ public class Airline{
                 case 2: showMST(); break;
                 case 3: showSP(); break;
                 case 4: showAffordable(); break;
-                case 5: addRoute(); break;
-                case 6: removeRoute(); break;
-                case 7: saveData(filename); exit = true; System.out.println("\nHave a nice day!\n"); break;
+                case 5: showReachable(); break;
+                case 6: addRoute(); break;
+                case 7: removeRoute(); break;
+                case 8: saveData(filename); exit = true; System.out.println("\nHave a nice day!\n"); break;
                 default: System.out.println("\nInvalid input!\n"); break;
             }
         }
@@ -0,0 +1,159 @@
+/*************************************************************************
+ *  Description: all-pairs shortest path weights written into a          *
+ *               DistanceMatrix                                          *
+ *               option 0 - distance, 1 - price, 2 - hops                *
+ *                                                                       *
+ *  dijkstra      one single-source search per origin, run in parallel   *
+ *                on a fork-join pool, O(V (E + V) log V), the choice    *
+ *                for sparse route networks                              *
+ *  floydWarshall blocked Floyd-Warshall, O(V^3) but on B x B tiles      *
+ *                that fit in cache, with the tiles of each round        *
+ *                processed in parallel, the choice for dense networks   *
+ *                                                                       *
+ *  Usage: java AllPairs data.txt data.matrix [option] [-fw]             *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+public class AllPairs {
+    private static final int B = 64;        // tile size of the blocked Floyd-Warshall
+    private static final int SOURCES = 4;   // origins per task of the parallel Dijkstra
+
+    /* run Dijkstra's algorithm (or BFS for hops) from every vertex */
+    public static DistanceMatrix dijkstra(RouteGraph G, int option, String filename, ForkJoinPool pool) throws IOException {
+        final CompactGraph C = G.snapshot();     // one version for the whole table
+        final int V = C.V();
+        final DistanceMatrix M = DistanceMatrix.create(filename, V, option);
+        ParallelRange.run(pool, 0, V, SOURCES, (lo, hi) -> {
+            SearchWorkspace ws = SearchWorkspace.forThread(V);
+            float[] row = new float[V];
+            for (int s = lo; s < hi; s++) {
+                ShortestPath sp = new ShortestPath(C, option, ws);
+                if (option == 2) sp.bfsSP(s);
+                else             sp.dijkstraSP(s);
+                for (int t = 0; t < V; t++)
+                    row[t] = (float) sp.distTo(t);
+                M.putRow(s, row);
+            }
+        });
+        M.force();
+        return M;
+    }
+
+    /* run the blocked Floyd-Warshall algorithm */
+    public static DistanceMatrix floydWarshall(RouteGraph G, int option, String filename, ForkJoinPool pool) throws IOException {
+        final CompactGraph C = G.snapshot();
+        final int V = C.V();
+        final DistanceMatrix M = DistanceMatrix.create(filename, V, option);
+
+        // direct routes
+        ParallelRange.run(pool, 0, V, B, (lo, hi) -> {
+            float[] row = new float[V];
+            for (int s = lo; s < hi; s++) {
+                M.getRow(s, row);
+                for (int a = C.begin(s), end = C.end(s); a < end; a++) {
+                    float w = option == 2 ? 1 : (float) C.weight(a, option);
+                    if (w < row[C.target(a)]) row[C.target(a)] = w;
+                }
+                M.putRow(s, row);
+            }
+        });
+
+        final int n = (V + B - 1) / B;   // tiles per row
+        for (int k = 0; k < n; k++) {
+            final int kb = k;
+            // round 1: the diagonal tile on its own
+            float[] diag = new float[B*B];
+            load(M, kb, kb, diag);
+            relax(diag, diag, diag, size(V, kb));
+            store(M, kb, kb, diag);
+
+            // round 2: the other tiles of row k and column k, through the diagonal tile
+            ParallelRange.run(pool, 0, n, 1, (lo, hi) -> {
+                float[] c = new float[B*B];
+                for (int j = lo; j < hi; j++) {
+                    if (j == kb) continue;
+                    load(M, kb, j, c);
+                    relax(c, diag, c, size(V, kb));
+                    store(M, kb, j, c);
+                    load(M, j, kb, c);
+                    relax(c, c, diag, size(V, kb));
+                    store(M, j, kb, c);
+                }
+            });
+
+            // round 3: every remaining tile, through its row and column tiles of round 2
+            ParallelRange.run(pool, 0, n, 1, (lo, hi) -> {
+                float[] c = new float[B*B], a = new float[B*B], b = new float[B*B];
+                for (int i = lo; i < hi; i++) {
+                    if (i == kb) continue;
+                    load(M, i, kb, a);
+                    for (int j = 0; j < n; j++) {
+                        if (j == kb) continue;
+                        load(M, kb, j, b);
+                        load(M, i, j, c);
+                        relax(c, a, b, size(V, kb));
+                        store(M, i, j, c);
+                    }
+                }
+            });
+        }
+        M.force();
+        return M;
+    }
+
+    // number of vertices in tile t
+    private static int size(int V, int t) {
+        return Math.min(B, V - t*B);
+    }
+
+    // c[i][j] = min(c[i][j], a[i][k] + b[k][j]) for the m vertices k of the pivot tile,
+    // rows and columns past the end of the matrix hold +Infinity and are left alone
+    private static void relax(float[] c, float[] a, float[] b, int m) {
+        for (int k = 0; k < m; k++) {
+            for (int i = 0; i < B; i++) {
+                float aik = a[i*B + k];
+                if (aik == Float.POSITIVE_INFINITY) continue;
+                int ci = i*B, bk = k*B;
+                for (int j = 0; j < B; j++) {
+                    float d = aik + b[bk + j];
+                    if (d < c[ci + j]) c[ci + j] = d;
+                }
+            }
+        }
+    }
+
+    // copy tile (ti, tj) into t, padding with +Infinity
+    private static void load(DistanceMatrix M, int ti, int tj, float[] t) {
+        java.util.Arrays.fill(t, Float.POSITIVE_INFINITY);
+        int V = M.V(), rows = size(V, ti), cols = size(V, tj);
+        for (int i = 0; i < rows; i++)
+            M.getRow(ti*B + i, tj*B, t, i*B, cols);
+    }
+
+    private static void store(DistanceMatrix M, int ti, int tj, float[] t) {
+        int V = M.V(), rows = size(V, ti), cols = size(V, tj);
+        for (int i = 0; i < rows; i++)
+            M.putRow(ti*B + i, tj*B, t, i*B, cols);
+    }
+
+    /* compute the table of a route file */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java AllPairs <route file> <matrix file> [option] [-fw]");
+            return;
+        }
+        int option = args.length > 2 && !args[2].equals("-fw") ? Integer.parseInt(args[2]) : 0;
+        boolean fw = args[args.length-1].equals("-fw");
+
+        RouteGraph rg = new RouteGraph();
+        rg.load(args[0]);
+        long start = System.nanoTime();
+        DistanceMatrix M = fw ? floydWarshall(rg, option, args[1], ForkJoinPool.commonPool())
+                              : dijkstra(rg, option, args[1], ForkJoinPool.commonPool());
+        System.out.format("%s: %d x %d table written to %s in %.1f ms%n", fw ? "Floyd-Warshall" : "Dijkstra",
+                          M.V(), M.V(), args[1], (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,103 @@
+/*************************************************************************
+ *  Description: a CompactGraph held in heap arrays, frozen from the     *
+ *               EdgeStore of a RouteGraph                               *
+ *                                                                       *
+ *************************************************************************/
+
+public class ArrayGraph implements CompactGraph {
+    private final int V;              // number of vertices
+    private final int E;              // number of (undirected) edges
+    private final int[] offsets;      // arcs of v are offsets[v] .. offsets[v+1]-1
+    private final int[] targets;      // targets[a] = head vertex of arc a
+    private final double[] distance;  // distance[a] = distance weight of arc a
+    private final double[] price;     // price[a] = price weight of arc a
+    private final Edge[] edges;       // edges[a] = the route arc a was built from
+
+    /* freeze the routes of a store into CSR arrays, each city's newest route first */
+    public ArrayGraph(EdgeStore S){
+        V = S.V();
+        E = S.E();
+        offsets = new int[V+1];
+        targets = new int[2*E];
+        distance = new double[2*E];
+        price = new double[2*E];
+        edges = new Edge[2*E];
+
+        int a = 0;
+        for(int v = 0; v < V; v++){
+            offsets[v] = a;
+            for(int i = 0, n = S.degree(v); i < n; i++){
+                int r = S.route(v, i);
+                targets[a] = S.other(r, v);
+                distance[a] = S.distance(r);
+                price[a] = S.price(r);
+                edges[a] = S.edge(r);
+                a++;
+            }
+        }
+        offsets[V] = a;
+    }
+
+    // getters
+    public int V() {
+        return V;
+    }
+
+    public int E() {
+        return E;
+    }
+
+    // first arc leaving v
+    public int begin(int v) {
+        return offsets[v];
+    }
+
+    // one past the last arc leaving v
+    public int end(int v) {
+        return offsets[v+1];
+    }
+
+    public int degree(int v) {
+        return offsets[v+1] - offsets[v];
+    }
+
+    public int target(int a) {
+        return targets[a];
+    }
+
+    public double distance(int a) {
+        return distance[a];
+    }
+
+    public double price(int a) {
+        return price[a];
+    }
+
+    // same option codes as Edge.weight: 0 - distance, 1 - price
+    public double weight(int a, int option) {
+        if(option == 0) return distance[a];
+        if(option == 1) return price[a];
+        return 0;
+    }
+
+    public Edge edge(int a) {
+        return edges[a];
+    }
+
+    // tail vertex of arc a, found by a binary search over the offsets
+    public int source(int a) {
+        int lo = 0, hi = V-1;
+        while(lo < hi){
+            int mid = (lo+hi+1) >>> 1;
+            if(offsets[mid] <= a) lo = mid;
+            else                  hi = mid-1;
+        }
+        return lo;
+    }
+
+    // the endpoint of arc a that is not v
+    public int other(int a, int v) {
+        int w = targets[a];
+        return w != v ? w : source(a);
+    }
+}
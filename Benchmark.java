@@ -0,0 +1,211 @@
+/*************************************************************************
+ *  Description: micro benchmarks of the route graph operations          *
+ *                                                                       *
+ *  Each benchmark runs warmup iterations, then measured iterations of   *
+ *  a fixed length, and reports throughput (operations per second, mean  *
+ *  and 99.9% error over the iterations) and allocation (bytes per       *
+ *  operation, counted over all threads by the JVM). The network is      *
+ *  either a route file or one made by NetworkGenerator with a fixed     *
+ *  seed, so runs of different releases can be compared; -csv appends    *
+ *  the results to a file for that.                                      *
+ *                                                                       *
+ *  Usage: java Benchmark [options] [route file]                         *
+ *    -n <cities>   generate a network of that size (default 10000)      *
+ *    -m <routes>   routes per new city (default 5)                      *
+ *    -seed <seed>  generator seed (default 42)                          *
+ *    -wi <n>       warmup iterations (default 3)                        *
+ *    -i <n>        measured iterations (default 5)                      *
+ *    -t <ms>       iteration length (default 1000)                      *
+ *    -b <name>     run only benchmarks whose name contains name         *
+ *    -csv <file>   append the results as CSV lines                      *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class Benchmark {
+    /* one operation of a benchmark, i is the number of the operation */
+    private interface Op {
+        public void run(int i) throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private int warmups = 3, iterations = 5;
+    private long millis = 1000;
+    private String only = null;
+    private PrintWriter csv = null;
+    private String network;               // route file being measured
+    private volatile Object sink;         // results are stored here so the JIT cannot drop the work
+
+    public static void main(String[] args) throws Exception {
+        Benchmark b = new Benchmark();
+        int n = 10000, m = 5;
+        long seed = 42;
+        String file = null, csvFile = null;
+        for(int k = 0; k < args.length; k++){
+            switch(args[k]){
+                case "-n":    n = Integer.parseInt(args[++k]); break;
+                case "-m":    m = Integer.parseInt(args[++k]); break;
+                case "-seed": seed = Long.parseLong(args[++k]); break;
+                case "-wi":   b.warmups = Integer.parseInt(args[++k]); break;
+                case "-i":    b.iterations = Integer.parseInt(args[++k]); break;
+                case "-t":    b.millis = Long.parseLong(args[++k]); break;
+                case "-b":    b.only = args[++k]; break;
+                case "-csv":  csvFile = args[++k]; break;
+                default:      file = args[k]; break;
+            }
+        }
+        if(file == null){
+            File tmp = File.createTempFile("network", ".txt");
+            tmp.deleteOnExit();
+            new NetworkGenerator(n, m, seed).write(tmp.getPath());
+            file = tmp.getPath();
+            b.network = "generated n="+n+" m="+m+" seed="+seed;
+        } else {
+            b.network = file;
+        }
+        if(csvFile != null) b.csv = new PrintWriter(new FileWriter(csvFile, true), true);
+        b.runAll(file);
+        if(b.csv != null) b.csv.close();
+    }
+
+    private void runAll(String file) throws Exception {
+        RouteGraph G = new RouteGraph();
+        G.load(file);
+        final int V = G.V();
+        System.out.println("# Network: "+network+" ("+V+" cities, "+G.E()+" routes)");
+        System.out.format("%-28s %6s %14s %12s %16s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+
+        // origins are drawn up front, the same sequence in every run
+        final int[] origins = new int[1 << 12];
+        Random random = new Random(1);
+        for(int k = 0; k < origins.length; k++) origins[k] = random.nextInt(V);
+        final int mask = origins.length - 1;
+
+        run("load", i -> { RouteGraph g = new RouteGraph(); g.load(file); sink = g; });
+        run("loadParallel", i -> { RouteGraph g = new RouteGraph(); g.load(file, true); sink = g; });
+        run("dijkstraSP.distance", i -> {
+            ShortestPath sp = new ShortestPath(G, 0, SearchWorkspace.forThread(V));
+            sp.dijkstraSP(origins[i & mask]);
+            sink = sp;
+        });
+        run("dijkstraSP.price", i -> {
+            ShortestPath sp = new ShortestPath(G, 1, SearchWorkspace.forThread(V));
+            sp.dijkstraSP(origins[i & mask]);
+            sink = sp;
+        });
+        final double delta = DeltaStepping.defaultDelta(G.snapshot(), 0);
+        run("DeltaStepping.distance", i -> sink = new DeltaStepping(G.snapshot(), 0, origins[i & mask], delta, ForkJoinPool.commonPool()));
+        run("bfsSP", i -> {
+            ShortestPath sp = new ShortestPath(G, 2, SearchWorkspace.forThread(V));
+            sp.bfsSP(origins[i & mask]);
+            sink = sp;
+        });
+        run("HopsBFS", i -> {
+            HopsBFS bfs = HopsBFS.forThread(G.snapshot());
+            bfs.search(origins[i & mask]);
+            sink = bfs;
+        });
+        final OverlayPartition cells = new OverlayPartition(G.snapshot());
+        run("MultilevelOverlay.customize", i -> sink = new MultilevelOverlay(cells, G.snapshot(), 1, ForkJoinPool.commonPool()));
+        final Timetable tt = timetable(G.snapshot(), new Random(2));
+        run("ConnectionScan.earliest", i -> sink = ConnectionScan.forThread(tt, 30).earliestArrival(origins[i & mask], origins[(i + 1) & mask], 6*60));
+        run("PrimMST", i -> sink = new PrimMST(G));
+        run("KruskalMST", i -> sink = new KruskalMST(G.snapshot(), 0));
+        run("BoruvkaMST", i -> sink = new BoruvkaMST(G.snapshot(), 0, ForkJoinPool.commonPool()));
+
+        // a budget of twice the cheapest fare keeps the enumeration finite on any network
+        double cheapest = Double.POSITIVE_INFINITY;
+        CompactGraph C = G.snapshot();
+        for(int a = 0; a < 2*C.E(); a++) cheapest = Math.min(cheapest, C.price(a));
+        final double budget = 2*cheapest;
+        final PrintStream out = System.out;
+        run("getAffordable", i -> {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                G.getAffordable(budget);
+            } finally {
+                System.setOut(out);
+            }
+        });
+        run("affordableTrips", i -> sink = G.getAffordable(budget, Long.MAX_VALUE, trip -> true));
+
+        // a sync of route changes: remove a route and add it back, all in one batch
+        final RouteGraph g = new RouteGraph();
+        g.load(file);
+        final int[] arcs = new int[1 << 12];
+        for(int k = 0; k < arcs.length; k++) arcs[k] = random.nextInt(2*C.E());
+        g.beginUpdate();
+        run("removeAdd", i -> {
+            int a = arcs[i & mask];
+            g.removeEdge(C.source(a), C.target(a));
+            g.addEdge(C.edge(a));
+        });
+        g.endUpdate();
+    }
+
+    // four flights a day on every arc, at random times, flying 8 miles a minute plus half an hour
+    private static Timetable timetable(CompactGraph C, Random random){
+        int n = 4 * 2*C.E();
+        int[] from = new int[n], to = new int[n], dep = new int[n], arr = new int[n];
+        for(int a = 0, k = 0; a < 2*C.E(); a++)
+            for(int f = 0; f < 4; f++, k++){
+                from[k] = C.source(a);
+                to[k] = C.target(a);
+                dep[k] = random.nextInt(24*60);
+                arr[k] = dep[k] + 30 + (int) (C.distance(a) / 8);
+            }
+        return new Timetable(C.V(), n, from, to, dep, arr);
+    }
+
+    // measure one benchmark and print its line
+    private void run(String name, Op op) throws Exception {
+        if(only != null && !name.contains(only)) return;
+        for(int k = 0; k < warmups; k++) iteration(op);
+        double[] score = new double[iterations];
+        double bytes = 0;
+        for(int k = 0; k < iterations; k++){
+            double[] r = iteration(op);
+            score[k] = r[0];
+            bytes += r[1];
+        }
+        double mean = 0;
+        for(double s : score) mean += s;
+        mean /= iterations;
+        double var = 0;
+        for(double s : score) var += (s - mean)*(s - mean);
+        double error = iterations > 1 ? 3.29 * Math.sqrt(var/(iterations-1)) / Math.sqrt(iterations) : Double.NaN;
+        bytes /= iterations;
+        System.out.format("%-28s %6d %14.3f %12.3f %16s%n", name, iterations, mean, error, "ops/s");
+        System.out.format("%-28s %6d %14.1f %12s %16s%n", name+":alloc", iterations, bytes, "", "B/op");
+        if(csv != null)
+            csv.println(System.currentTimeMillis()+",\""+network+"\","+name+","+mean+","+error+","+bytes);
+    }
+
+    // run op for the iteration length, return {operations per second, bytes allocated per operation}
+    private double[] iteration(Op op) throws Exception {
+        long bytes0 = allocated();
+        long start = System.nanoTime(), end = start + millis*1000000L, now;
+        int ops = 0;
+        do {
+            op.run(ops++);
+            now = System.nanoTime();
+        } while(now < end);
+        long bytes = allocated() - bytes0;
+        return new double[]{ ops / ((now - start) / 1e9), (double) bytes / ops };
+    }
+
+    // bytes allocated so far by all live threads, pool threads included
+    private static long allocated() {
+        long sum = 0;
+        for(long b : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds()))
+            if(b > 0) sum += b;
+        return sum;
+    }
+}
@@ -0,0 +1,101 @@
+/*************************************************************************
+ *  Description: minimum spanning forest by Boruvka's algorithm          *
+ *                                                                       *
+ *  Each round finds the cheapest route out of every component and adds  *
+ *  them all, which at least halves the number of components, so there  *
+ *  are at most log V rounds. The vertices are grouped by component      *
+ *  first, and the components are then searched in parallel on a         *
+ *  fork-join pool, each by one task, so no shared state is written.     *
+ *  Ties are broken by the ends of the route, so the routes picked in a  *
+ *  round never form a cycle.                                            *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+public class BoruvkaMST implements MST {
+    private static final int COMPONENTS = 64;   // components per task
+
+    private final CompactGraph G;
+    private final int option;
+    private final IntList mst = new IntList();   // arcs of the forest
+    private double weight;
+
+    /* the MST of a snapshot by distance (option 0) or price (option 1), searched on pool
+       (or on the calling thread if pool is null) */
+    public BoruvkaMST(CompactGraph G, int option, ForkJoinPool pool) {
+        this.G = G;
+        this.option = option;
+        final int V = G.V();
+        UnionFind uf = new UnionFind(V);
+        int[] comp = new int[V];           // comp[v] = index of the component of v in this round
+        int[] start = new int[V + 1];      // vertices of component c are members[start[c] .. start[c+1]-1]
+        int[] members = new int[V];
+        int[] root = new int[V];           // root[c] = union-find root of component c
+        int[] best = new int[V];           // best[c] = cheapest arc out of component c, -1 if none
+        int[] from = new int[V];           // from[c] = tail vertex of best[c]
+
+        while (true) {
+            // number the components and group their vertices
+            int n = 0;
+            for (int v = 0; v < V; v++)
+                if (uf.find(v) == v) { comp[v] = n; root[n++] = v; }
+            java.util.Arrays.fill(start, 0, n + 1, 0);
+            for (int v = 0; v < V; v++) {
+                comp[v] = comp[uf.find(v)];
+                start[comp[v] + 1]++;
+            }
+            for (int c = 0; c < n; c++) start[c + 1] += start[c];
+            int[] next = java.util.Arrays.copyOf(start, n);
+            for (int v = 0; v < V; v++) members[next[comp[v]]++] = v;
+
+            // the cheapest route out of each component
+            final int[] cmp = comp, st = start, mem = members, bst = best, frm = from;
+            ParallelRange.run(pool, 0, n, COMPONENTS, (lo, hi) -> {
+                for (int c = lo; c < hi; c++) {
+                    int b = -1, bv = -1;
+                    for (int i = st[c]; i < st[c + 1]; i++) {
+                        int v = mem[i];
+                        for (int a = G.begin(v), end = G.end(v); a < end; a++)
+                            if (cmp[G.target(a)] != c && (b == -1 || less(a, v, b, bv))) { b = a; bv = v; }
+                    }
+                    bst[c] = b;
+                    frm[c] = bv;
+                }
+            });
+
+            boolean added = false;
+            for (int c = 0; c < n; c++) {
+                int a = best[c];
+                if (a != -1 && uf.union(from[c], G.target(a))) {
+                    mst.add(a);
+                    weight += G.weight(a, option);
+                    added = true;
+                }
+            }
+            if (!added) break;
+        }
+    }
+
+    // true if arc a out of v is cheaper than arc b out of w, ties broken by the ends of the routes
+    private boolean less(int a, int v, int b, int w) {
+        double wa = G.weight(a, option), wb = G.weight(b, option);
+        if (wa != wb) return wa < wb;
+        int alo = Math.min(v, G.target(a)), ahi = Math.max(v, G.target(a));
+        int blo = Math.min(w, G.target(b)), bhi = Math.max(w, G.target(b));
+        if (alo != blo) return alo < blo;
+        return ahi < bhi;
+    }
+
+    public Iterable<Edge> edges() {
+        LinkedList<Edge> edges = new LinkedList<Edge>();
+        for (int i = 0; i < mst.size(); i++)
+            edges.add(G.edge(mst.get(i)));
+        return edges;
+    }
+
+    public double weight() {
+        return weight;
+    }
+}
@@ -0,0 +1,46 @@
+/*************************************************************************
+ *  Description: an immutable compressed-sparse-row (CSR) snapshot of a  *
+ *               RouteGraph, used by the query algorithms                *
+ *                                                                       *
+ *  Every undirected route v-w is stored as two arcs, v->w and w->v.     *
+ *  The arcs leaving v are numbered begin(v) .. end(v)-1, and the        *
+ *  weights of arc a are read from distance(a) and price(a).             *
+ *  ArrayGraph keeps the arrays on the heap, MappedGraph reads them      *
+ *  straight out of a memory-mapped binary route file.                   *
+ *                                                                       *
+ *************************************************************************/
+
+public interface CompactGraph {
+    // number of vertices
+    public int V();
+
+    // number of (undirected) edges
+    public int E();
+
+    // first arc leaving v
+    public int begin(int v);
+
+    // one past the last arc leaving v
+    public int end(int v);
+
+    public int degree(int v);
+
+    // head vertex of arc a
+    public int target(int a);
+
+    public double distance(int a);
+
+    public double price(int a);
+
+    // same option codes as Edge.weight: 0 - distance, 1 - price
+    public double weight(int a, int option);
+
+    // the route arc a was built from
+    public Edge edge(int a);
+
+    // tail vertex of arc a
+    public int source(int a);
+
+    // the endpoint of arc a that is not v
+    public int other(int a, int v);
+}
@@ -0,0 +1,311 @@
+/*************************************************************************
+ *  Description: earliest arrival and profile queries on a Timetable,    *
+ *               Connection Scan Algorithm                               *
+ *                                                                       *
+ *  Earliest arrival: the flights are read once, in departure order,     *
+ *  from the first one leaving at the start time: a flight can be taken  *
+ *  if its city was reached at least the transfer time before it leaves  *
+ *  (the origin at the start time itself), and then its arrival may      *
+ *  improve the city it lands in. The scan stops at the first flight     *
+ *  that leaves after the best arrival at the target.                    *
+ *                                                                       *
+ *  Profile: the flights are read once backwards, and every city keeps   *
+ *  the pairs (departure, earliest arrival at the target) that no later  *
+ *  departure beats, by decreasing departure, so the best onward pair    *
+ *  for a landing time is found by binary search. The pairs of the       *
+ *  origin are the answer for every departure time at once.              *
+ *                                                                       *
+ *  Labels are stamped with a query epoch, so a query costs nothing for  *
+ *  the cities it does not reach. Each thread reuses its own instance    *
+ *  per timetable through forThread.                                     *
+ *                                                                       *
+ *  Check: java ConnectionScan <timetables> <seed> compares both queries *
+ *  on random timetables with a brute force search that relaxes every    *
+ *  flight until nothing improves, and prints the mismatches.            *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ConnectionScan {
+    private static final int STRIDE = 4;
+    private static final int D = Timetable.DEPARTURE, A = Timetable.ARRIVAL, F = Timetable.FROM, T = Timetable.TO;
+    private static final ThreadLocal<ConnectionScan> local = new ThreadLocal<ConnectionScan>();
+
+    /* a trip, the flights it takes in order */
+    public static class Journey {
+        private final Timetable timetable;
+        private final int[] legs;
+
+        public Journey(Timetable timetable, int[] legs) {
+            this.timetable = timetable;
+            this.legs = legs;
+        }
+
+        /* number of flights, 0 for a trip that stays at its origin */
+        public int size() {
+            return legs.length;
+        }
+
+        /* the i-th flight, an index into the timetable */
+        public int leg(int i) {
+            return legs[i];
+        }
+
+        public int departure() {
+            return timetable.departure(legs[0]);
+        }
+
+        public int arrival() {
+            return timetable.arrival(legs[legs.length - 1]);
+        }
+    }
+
+    private final Timetable tt;
+    private final int V;
+    private final int transfer;     // minutes needed between landing in a city and leaving it
+
+    // earliest arrival labels, valid if stamp[v] == epoch
+    private int epoch;
+    private final int[] stamp;
+    private final int[] ready;      // ready[v] = earliest time a flight can leave v
+    private final int[] in;         // in[v] = flight that reached v
+
+    // profiles: pair p is (pd[p], pa[p]) taking flight pf[p] first
+    private int pairs;
+    private int[] pd = new int[1024], pa = new int[1024], pf = new int[1024];
+    private final IntList[] bag;    // bag[v] = pairs of v by decreasing departure, null if none
+    private final IntList touched = new IntList();   // cities with a bag, cleared before the next profile
+    private final IntList window = new IntList();    // pairs of the origin leaving in the query window
+
+    public ConnectionScan(Timetable tt, int transfer) {
+        if (transfer < 0) throw new IllegalArgumentException("Transfer time must be nonnegative");
+        this.tt = tt;
+        this.transfer = transfer;
+        V = tt.V();
+        stamp = new int[V];
+        ready = new int[V];
+        in = new int[V];
+        bag = new IntList[V];
+    }
+
+    /* return the instance of the calling thread for tt and transfer */
+    public static ConnectionScan forThread(Timetable tt, int transfer) {
+        ConnectionScan cs = local.get();
+        if (cs == null || cs.tt != tt || cs.transfer != transfer) {
+            cs = new ConnectionScan(tt, transfer);
+            local.set(cs);
+        }
+        return cs;
+    }
+
+    /* the trip from s leaving at time or later that lands in t first, null if there is none */
+    public Journey earliestArrival(int s, int t, int time) {
+        if (s == t) return new Journey(tt, new int[0]);
+        if (++epoch == Integer.MAX_VALUE) {   // wrap around, clear the stamps once
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        stamp[s] = epoch;
+        ready[s] = time;
+        int best = Integer.MAX_VALUE, last = -1;   // arrival at t and the flight that lands there
+
+        int[] c = tt.flights();
+        for (int i = STRIDE * tt.first(time), end = STRIDE * tt.size(); i < end; i += STRIDE) {
+            int dep = c[i + D];
+            if (dep >= best) break;                // later flights cannot land earlier
+            int f = c[i + F];
+            if (stamp[f] != epoch || ready[f] > dep) continue;
+            int to = c[i + T], arr = c[i + A];
+            if (to == t) {
+                if (arr < best) { best = arr; last = i / STRIDE; }
+            } else if (stamp[to] != epoch || arr + transfer < ready[to]) {
+                stamp[to] = epoch;
+                ready[to] = arr + transfer;
+                in[to] = i / STRIDE;
+            }
+        }
+        if (last == -1) return null;
+
+        IntList legs = new IntList();
+        for (int leg = last; ; leg = in[tt.from(leg)]) {
+            legs.add(leg);
+            if (tt.from(leg) == s) break;
+        }
+        int[] order = new int[legs.size()];
+        for (int i = 0; i < order.length; i++) order[i] = legs.get(order.length - 1 - i);
+        return new Journey(tt, order);
+    }
+
+    /* for every departure from s between from and until, the trip that lands in t first,
+       leaving out those that a later departure in the window lands no later than; by departure */
+    public ArrayList<Journey> profile(int s, int t, int from, int until) {
+        ArrayList<Journey> trips = new ArrayList<Journey>();
+        if (s == t) return trips;
+        for (int k = 0; k < touched.size(); k++) bag[touched.get(k)] = null;
+        touched.clear();
+        window.clear();
+        pairs = 0;
+
+        int[] c = tt.flights();
+        for (int i = STRIDE * (tt.size() - 1), lo = STRIDE * tt.first(from); i >= lo; i -= STRIDE) {
+            int f = c[i + F];
+            if (f == t) continue;                  // trips end at t
+            int to = c[i + T], arr = c[i + A], at;
+            if (to == t) at = arr;
+            else {
+                int p = onward(to, arr + transfer);
+                if (p == -1) continue;
+                at = pa[p];
+            }
+            if (bag[f] == null) {
+                bag[f] = new IntList();
+                touched.add(f);
+            }
+            add(bag[f], c[i + D], at, i / STRIDE);
+            // the answer only weighs the departures in the window against each other, while
+            // bag[s] also keeps later ones for trips that pass through s again
+            if (f == s && c[i + D] <= until) add(window, c[i + D], at, i / STRIDE);
+        }
+
+        // the pairs of the window, by increasing departure, each followed flight by flight to t
+        for (int k = window.size() - 1; k >= 0; k--) {
+            int p = window.get(k);
+            IntList legs = new IntList();
+            for (int leg = pf[p]; ; leg = pf[onward(tt.to(leg), tt.arrival(leg) + transfer)]) {
+                legs.add(leg);
+                if (tt.to(leg) == t) break;
+            }
+            trips.add(new Journey(tt, legs.toArray()));
+        }
+        return trips;
+    }
+
+    // the pair of v leaving at time or later that lands in t first, -1 if there is none
+    private int onward(int v, int time) {
+        IntList b = bag[v];
+        if (b == null || pd[b.get(0)] < time) return -1;
+        int lo = 0, hi = b.size() - 1;             // the last pair leaving at time or later
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (pd[b.get(mid)] >= time) lo = mid;
+            else                        hi = mid - 1;
+        }
+        return b.get(lo);
+    }
+
+    // add (dep, arr) by flight f to the pairs b, unless a later departure lands no later
+    private void add(IntList b, int dep, int arr, int f) {
+        if (!b.isEmpty()) {
+            int top = b.get(b.size() - 1);
+            if (pa[top] <= arr) return;
+            if (pd[top] == dep) {                  // the same departure, landing earlier
+                pa[top] = arr;
+                pf[top] = f;
+                return;
+            }
+        }
+        if (pairs == pd.length) {
+            pd = Arrays.copyOf(pd, 2 * pairs);
+            pa = Arrays.copyOf(pa, 2 * pairs);
+            pf = Arrays.copyOf(pf, 2 * pairs);
+        }
+        pd[pairs] = dep;
+        pa[pairs] = arr;
+        pf[pairs] = f;
+        b.add(pairs++);
+    }
+
+    // earliest arrival at t by brute force, starting with a flight from s that leaves between
+    // from and until; s can be left again at any time once a trip has come back to it
+    private static int bruteForce(Timetable tt, int transfer, int s, int t, int from, int until) {
+        int[] ready = new int[tt.V()];
+        Arrays.fill(ready, Integer.MAX_VALUE);
+        int best = Integer.MAX_VALUE;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int i = 0; i < tt.size(); i++) {
+                int f = tt.from(i), to = tt.to(i), dep = tt.departure(i), arr = tt.arrival(i);
+                boolean first = f == s && dep >= from && dep <= until;
+                if (f == t || (!first && ready[f] > dep)) continue;
+                if (to == t) {
+                    if (arr < best) { best = arr; changed = true; }
+                } else if (arr + transfer < ready[to]) {
+                    ready[to] = arr + transfer;
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    // true if j is a trip from s to t leaving at time or later with enough time for each transfer
+    private static boolean valid(Timetable tt, int transfer, Journey j, int s, int t, int time) {
+        if (j.size() == 0 || tt.from(j.leg(0)) != s || tt.to(j.leg(j.size() - 1)) != t || j.departure() < time)
+            return false;
+        for (int i = 1; i < j.size(); i++)
+            if (tt.from(j.leg(i)) != tt.to(j.leg(i - 1)) || tt.departure(j.leg(i)) < tt.arrival(j.leg(i - 1)) + transfer)
+                return false;
+        return true;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java ConnectionScan <timetables> <seed>");
+            return;
+        }
+        int n = Integer.parseInt(args[0]), queries = 0, wrong = 0;
+        Random random = new Random(Long.parseLong(args[1]));
+        for (int k = 0; k < n; k++) {
+            int V = 2 + random.nextInt(30), m = random.nextInt(400), transfer = 10 * random.nextInt(3);
+            int[] from = new int[m], to = new int[m], dep = new int[m], arr = new int[m];
+            for (int i = 0; i < m; i++) {
+                from[i] = random.nextInt(V);
+                to[i] = (from[i] + 1 + random.nextInt(V - 1)) % V;
+                dep[i] = random.nextInt(1000);
+                arr[i] = dep[i] + 1 + random.nextInt(100);
+            }
+            Timetable tt = new Timetable(V, m, from, to, dep, arr);
+            ConnectionScan cs = new ConnectionScan(tt, transfer);
+            for (int q = 0; q < 20; q++, queries++) {
+                int s = random.nextInt(V), t = (s + 1 + random.nextInt(V - 1)) % V;
+                int lo = random.nextInt(1000), hi = lo + random.nextInt(500);
+
+                Journey j = cs.earliestArrival(s, t, lo);
+                int best = bruteForce(tt, transfer, s, t, lo, Integer.MAX_VALUE);
+                boolean ok = j == null ? best == Integer.MAX_VALUE : j.arrival() == best && valid(tt, transfer, j, s, t, lo);
+
+                // the departures of s in the window no later one in it lands as early as
+                IntList want = new IntList();
+                int[] departures = new int[m];
+                int d = 0;
+                for (int i = 0; i < m; i++)
+                    if (tt.from(i) == s && tt.departure(i) >= lo && tt.departure(i) <= hi) departures[d++] = tt.departure(i);
+                Arrays.sort(departures, 0, d);
+                for (int i = d - 1, later = Integer.MAX_VALUE; i >= 0; i--) {
+                    if (i < d - 1 && departures[i] == departures[i + 1]) continue;
+                    int a = bruteForce(tt, transfer, s, t, departures[i], hi);
+                    if (a < later) {
+                        want.add(departures[i]);
+                        want.add(a);
+                        later = a;
+                    }
+                }
+                ArrayList<Journey> got = cs.profile(s, t, lo, hi);
+                ok &= got.size() == want.size() / 2;
+                for (int i = 0; ok && i < got.size(); i++) {
+                    Journey g = got.get(i);
+                    int w = want.size() - 2 - 2 * i;
+                    ok = g.departure() == want.get(w) && g.arrival() == want.get(w + 1) && valid(tt, transfer, g, s, t, lo);
+                }
+                if (!ok) {
+                    wrong++;
+                    System.out.println("Mismatch: timetable " + k + ", from " + s + " to " + t + " between " + lo + " and " + hi);
+                }
+            }
+        }
+        System.out.println(wrong + " mismatches in " + queries + " queries");
+    }
+}
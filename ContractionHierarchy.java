@@ -0,0 +1,517 @@
+/*************************************************************************
+ *  Description: Contraction Hierarchies for fast shortest path queries  *
+ *               by distance (option 0) or price (option 1)              *
+ *                                                                       *
+ *  Build: vertices are contracted from least to most important. When v  *
+ *  is contracted, a shortcut u-w with weight(u-v) + weight(v-w) is      *
+ *  added for each pair of neighbours whose shortest path runs through   *
+ *  v, unless a witness search finds a path that is no longer. Each      *
+ *  round contracts an independent set of vertices (no two adjacent),    *
+ *  so the witness searches of a round can run in parallel.              *
+ *                                                                       *
+ *  Query: a bidirectional Dijkstra that only follows edges towards      *
+ *  higher-ranked vertices; shortcuts on the resulting path are          *
+ *  unpacked back into the original routes.                              *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+public class ContractionHierarchy {
+    private static final int SETTLE_LIMIT = 100;  // witness search budget, a smaller one only costs extra shortcuts
+    private static final int SIMULATE_LIMIT = 32; // priorities of busier vertices are estimated
+    private static final int SIMULATE_HOPS = 1;   // witness hop limit when computing priorities
+    private static final int CONTRACT_HOPS = 5;   // witness hop limit when adding shortcuts
+
+    private final CompactGraph G;   // CSR snapshot the hierarchy was built from
+    private final int option;       // 0 - distance, 1 - price
+    private final int V;            // number of vertices
+    private final int[] rank;       // rank[v] = position of v in the contraction order
+
+    // hierarchy edges: the original routes followed by the shortcuts
+    private int m;                  // number of hierarchy edges
+    private int[] tail, head;       // endpoints
+    private double[] weight;        // weight for the option
+    private int[] arc;              // arc of an original route, -1 for a shortcut
+    private int[] mid;              // contracted middle vertex of a shortcut
+    private int[] half1, half2;     // shortcut halves, tail-mid and mid-head
+
+    // upward graph: edges of v that lead to higher-ranked vertices
+    private int[] upOffsets;        // edges of v are upEdges[upOffsets[v] .. upOffsets[v+1]-1]
+    private int[] upEdges;
+
+    // state used while building only
+    private IntList[] adj;          // incident hierarchy edges of the uncontracted vertices
+    private boolean[] contracted;   // contracted in an earlier round
+    private boolean[] inRound;      // being contracted in the current round
+    private int[] priority;         // contraction priority, smaller first
+    private int[] deleted;          // number of contracted neighbours
+    private boolean[] dirty;        // priority needs to be recomputed
+    private ThreadLocal<Witness> witness;
+
+    private final ThreadLocal<Query> queries;
+
+    /* scratch space of one witness search thread */
+    private class Witness {
+        private final double[] dist = new double[V];
+        private final int[] stamp = new int[V];   // dist[v] is valid if stamp[v] == epoch
+        private final int[] hops = new int[V];    // number of edges on the path to v
+        private int epoch;
+        private final IndexMinPQ pq = new IndexMinPQ(V);
+        private final int[] seen = new int[V];    // seen[u] == round if u is in the neighbour list
+        private final int[] seenAt = new int[V];  // position of u in the neighbour list
+        private int round;
+        private final IntList nbr = new IntList();      // neighbours of the vertex being contracted
+        private final IntList nbrEdge = new IntList();  // lightest edge to each neighbour
+        private double[] nbrW = new double[16];         // weight of that edge
+
+        private double dist(int v) {
+            return stamp[v] == epoch ? dist[v] : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /* state of one query thread */
+    private class Query {
+        private final double[] distF = new double[V], distB = new double[V];
+        private final int[] edgeF = new int[V], edgeB = new int[V];
+        private final int[] stampF = new int[V], stampB = new int[V];
+        private int epoch;
+        private final IndexMinPQ fq = new IndexMinPQ(V), bq = new IndexMinPQ(V);
+        private final IntList stack = new IntList();
+
+        private double distF(int v) { return stampF[v] == epoch ? distF[v] : Double.POSITIVE_INFINITY; }
+        private double distB(int v) { return stampB[v] == epoch ? distB[v] : Double.POSITIVE_INFINITY; }
+    }
+
+    /* build the hierarchy for one weight option, on the common fork-join pool if parallel is true */
+    public ContractionHierarchy(RouteGraph graph, int option, boolean parallel){
+        this(graph.snapshot(), option, parallel);
+    }
+
+    /* build the hierarchy of a given snapshot */
+    public ContractionHierarchy(CompactGraph graph, int option, boolean parallel){
+        if(option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        this.G = graph;
+        this.option = option;
+        this.V = G.V();
+        this.rank = new int[V];
+        this.queries = new ThreadLocal<Query>(){
+            protected Query initialValue() { return new Query(); }
+        };
+        build(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    // getters
+    public int option() {
+        return option;
+    }
+
+    // number of shortcut edges added by the contraction
+    public int shortcuts() {
+        return m - G.E();
+    }
+
+    private void build(ForkJoinPool pool) {
+        // the original routes, each once
+        int cap = Math.max(16, 2*G.E());
+        tail = new int[cap]; head = new int[cap]; weight = new double[cap];
+        arc = new int[cap]; mid = new int[cap]; half1 = new int[cap]; half2 = new int[cap];
+        adj = new IntList[V];
+        for(int v = 0; v < V; v++)
+            adj[v] = new IntList(G.degree(v));
+        for(int v = 0; v < V; v++)
+            for(int a = G.begin(v), end = G.end(v); a < end; a++)
+                if(G.target(a) > v) addEdge(v, G.target(a), G.weight(a, option), a, -1, -1, -1);
+
+        contracted = new boolean[V];
+        inRound = new boolean[V];
+        priority = new int[V];
+        deleted = new int[V];
+        dirty = new boolean[V];
+        witness = new ThreadLocal<Witness>(){
+            protected Witness initialValue() { return new Witness(); }
+        };
+
+        IntList remaining = new IntList(V);
+        for(int v = 0; v < V; v++){
+            remaining.add(v);
+            dirty[v] = true;
+        }
+        int order = 0;
+        while(!remaining.isEmpty()){
+            final int[] rem = remaining.toArray();
+
+            // recompute the priorities that changed in the last round
+            ParallelRange.run(pool, 0, rem.length, 64, (lo, hi) -> {
+                Witness ws = witness.get();
+                for(int i = lo; i < hi; i++){
+                    int v = rem[i];
+                    if(dirty[v]){
+                        priority[v] = priority(v, ws);
+                        dirty[v] = false;
+                    }
+                }
+            });
+
+            // contract every vertex whose priority is smaller than that of all its neighbours
+            IntList round = new IntList();
+            for(int v : rem)
+                if(isLocalMin(v)){
+                    round.add(v);
+                    inRound[v] = true;
+                }
+            final int[] sel = round.toArray();
+            final IntList[] found = new IntList[sel.length];
+            ParallelRange.run(pool, 0, sel.length, 8, (lo, hi) -> {
+                Witness ws = witness.get();
+                for(int i = lo; i < hi; i++){
+                    found[i] = new IntList();
+                    shortcuts(sel[i], ws, found[i]);
+                }
+            });
+
+            // merge the shortcuts sequentially
+            for(int i = 0; i < sel.length; i++){
+                int v = sel[i];
+                rank[v] = order++;
+                contracted[v] = true;
+                inRound[v] = false;
+                IntList pairs = found[i];
+                for(int j = 0; j < pairs.size(); j += 2){
+                    int e1 = pairs.get(j), e2 = pairs.get(j+1);
+                    addEdge(other(e1, v), other(e2, v), weight[e1] + weight[e2], -1, v, e1, e2);
+                }
+                for(int j = 0; j < adj[v].size(); j++){
+                    int u = other(adj[v].get(j), v);
+                    if(contracted[u]) continue;
+                    deleted[u]++;
+                    dirty[u] = true;
+                }
+            }
+
+            // drop the contracted vertices from the remaining set and from the adjacency lists
+            remaining.clear();
+            for(int v : rem){
+                if(contracted[v]) continue;
+                remaining.add(v);
+                if(dirty[v]) prune(v);
+            }
+        }
+        buildUpward();
+
+        // free the build state
+        adj = null;
+        contracted = inRound = dirty = null;
+        priority = deleted = null;
+        witness = null;
+    }
+
+    private void addEdge(int u, int w, double wt, int a, int m0, int e1, int e2) {
+        if(m == tail.length){
+            int cap = 2*m;
+            tail = java.util.Arrays.copyOf(tail, cap);
+            head = java.util.Arrays.copyOf(head, cap);
+            weight = java.util.Arrays.copyOf(weight, cap);
+            arc = java.util.Arrays.copyOf(arc, cap);
+            mid = java.util.Arrays.copyOf(mid, cap);
+            half1 = java.util.Arrays.copyOf(half1, cap);
+            half2 = java.util.Arrays.copyOf(half2, cap);
+        }
+        tail[m] = u; head[m] = w; weight[m] = wt;
+        arc[m] = a; mid[m] = m0; half1[m] = e1; half2[m] = e2;
+        adj[u].add(m);
+        adj[w].add(m);
+        m++;
+    }
+
+    private int other(int e, int v) {
+        return tail[e] == v ? head[e] : tail[e];
+    }
+
+    // remove edges to contracted vertices from the adjacency list of v
+    private void prune(int v) {
+        IntList list = adj[v];
+        int k = 0;
+        for(int j = 0; j < list.size(); j++){
+            int e = list.get(j);
+            if(!contracted[other(e, v)]) list.set(k++, e);
+        }
+        list.truncate(k);
+    }
+
+    private boolean isLocalMin(int v) {
+        IntList list = adj[v];
+        for(int j = 0; j < list.size(); j++){
+            int u = other(list.get(j), v);
+            if(contracted[u]) continue;
+            if(priority[u] < priority[v] || (priority[u] == priority[v] && u < v)) return false;
+        }
+        return true;
+    }
+
+    // edge difference plus deleted neighbours, hubs are estimated without witness searches
+    private int priority(int v, Witness ws) {
+        int added = adj[v].size() > SIMULATE_LIMIT ? -1 : shortcuts(v, ws, null);
+        if(added < 0){
+            long k = adj[v].size(); // an upper bound on the number of neighbours
+            return (int) Math.min(Integer.MAX_VALUE, k*(k-1)/2 - k + deleted[v]);   // past 46341 neighbours k*k overflows an int
+        }
+        return added - ws.nbr.size() + deleted[v];
+    }
+
+    /* count the shortcuts needed to contract v, and append their halves to out if it is not null */
+    private int shortcuts(int v, Witness ws, IntList out) {
+        // lightest edge to each uncontracted neighbour
+        ws.round++;
+        ws.nbr.clear();
+        ws.nbrEdge.clear();
+        IntList list = adj[v];
+        for(int j = 0; j < list.size(); j++){
+            int e = list.get(j);
+            int u = other(e, v);
+            if(contracted[u]) continue;
+            if(ws.seen[u] == ws.round){
+                int i = ws.seenAt[u];
+                if(weight[e] < ws.nbrW[i]){
+                    ws.nbrEdge.set(i, e);
+                    ws.nbrW[i] = weight[e];
+                }
+                continue;
+            }
+            ws.seen[u] = ws.round;
+            ws.seenAt[u] = ws.nbr.size();
+            if(ws.nbr.size() == ws.nbrW.length) ws.nbrW = java.util.Arrays.copyOf(ws.nbrW, 2*ws.nbrW.length);
+            ws.nbrW[ws.nbr.size()] = weight[e];
+            ws.nbr.add(u);
+            ws.nbrEdge.add(e);
+        }
+
+        // look for witnesses between every pair of neighbours
+        int k = ws.nbr.size();
+        int count = 0;
+        for(int i = 0; i < k-1; i++){
+            int u = ws.nbr.get(i);
+            double wu = ws.nbrW[i];
+            double max = 0;
+            for(int j = i+1; j < k; j++) max = Math.max(max, wu + ws.nbrW[j]);
+            witnessSearch(u, v, i, max, out == null ? SIMULATE_HOPS : CONTRACT_HOPS, ws);
+            for(int j = i+1; j < k; j++){
+                if(ws.dist(ws.nbr.get(j)) <= wu + ws.nbrW[j]) continue;
+                count++;
+                if(out != null){
+                    out.add(ws.nbrEdge.get(i));
+                    out.add(ws.nbrEdge.get(j));
+                }
+            }
+        }
+        return count;
+    }
+
+    // bounded Dijkstra from u that avoids v and every vertex contracted so far or in this round,
+    // vertices hops edges away from u get a distance but are not expanded
+    private void witnessSearch(int u, int v, int i, double max, int hops, Witness ws) {
+        ws.epoch++;
+        ws.pq.clear();
+        ws.stamp[u] = ws.epoch;
+        ws.dist[u] = 0;
+        ws.hops[u] = 0;
+        ws.pq.insert(u, 0);
+        int settled = 0;
+        int targets = ws.nbr.size() - i - 1;   // neighbours after i still to be settled
+        while(!ws.pq.isEmpty() && ws.pq.minKey() <= max && settled++ < SETTLE_LIMIT){
+            int x = ws.pq.delMin();
+            if(ws.seen[x] == ws.round && ws.seenAt[x] > i && --targets == 0) break;
+            boolean last = ws.hops[x] + 1 >= hops;
+            IntList list = adj[x];
+            for(int j = 0; j < list.size(); j++){
+                int e = list.get(j);
+                int y = other(e, x);
+                if(y == v || contracted[y] || inRound[y]) continue;
+                double d = ws.dist[x] + weight[e];
+                if(d > max || d >= ws.dist(y)) continue;
+                ws.stamp[y] = ws.epoch;
+                ws.dist[y] = d;
+                ws.hops[y] = ws.hops[x] + 1;
+                if(ws.pq.contains(y)) ws.pq.decreaseKey(y, d);
+                else if(!last)        ws.pq.insert(y, d);
+            }
+        }
+    }
+
+    // store each hierarchy edge at its lower-ranked endpoint
+    private void buildUpward() {
+        upOffsets = new int[V+1];
+        for(int e = 0; e < m; e++)
+            upOffsets[lower(e)+1]++;
+        for(int v = 0; v < V; v++)
+            upOffsets[v+1] += upOffsets[v];
+        upEdges = new int[m];
+        int[] next = java.util.Arrays.copyOf(upOffsets, V);
+        for(int e = 0; e < m; e++)
+            upEdges[next[lower(e)]++] = e;
+    }
+
+    private int lower(int e) {
+        return rank[tail[e]] < rank[head[e]] ? tail[e] : head[e];
+    }
+
+    /* find a shortest route from s to t, null if there is none */
+    public Route route(int s, int t) {
+        Query q = queries.get();
+        q.epoch++;
+        q.fq.clear();
+        q.bq.clear();
+        q.stampF[s] = q.epoch; q.distF[s] = 0; q.edgeF[s] = -1;
+        q.stampB[t] = q.epoch; q.distB[t] = 0; q.edgeB[t] = -1;
+        q.fq.insert(s, 0);
+        q.bq.insert(t, 0);
+        double best = s == t ? 0 : Double.POSITIVE_INFINITY;
+        int meet = s == t ? s : -1;
+
+        // each side stops once its smallest key can no longer improve best
+        while(true){
+            boolean forward = !q.fq.isEmpty() && q.fq.minKey() < best;
+            boolean backward = !q.bq.isEmpty() && q.bq.minKey() < best;
+            if(!forward && !backward) break;
+            if(forward && backward) forward = q.fq.minKey() <= q.bq.minKey();
+
+            IndexMinPQ pq = forward ? q.fq : q.bq;
+            double[] dist = forward ? q.distF : q.distB;
+            int[] edge = forward ? q.edgeF : q.edgeB;
+            int[] stamp = forward ? q.stampF : q.stampB;
+            int x = pq.delMin();
+            for(int i = upOffsets[x], end = upOffsets[x+1]; i < end; i++){
+                int e = upEdges[i];
+                int y = other(e, x);
+                double d = dist[x] + weight[e];
+                if(stamp[y] == q.epoch && dist[y] <= d) continue;
+                stamp[y] = q.epoch;
+                dist[y] = d;
+                edge[y] = e;
+                if(pq.contains(y)) pq.decreaseKey(y, d);
+                else               pq.insert(y, d);
+                double total = d + (forward ? q.distB(y) : q.distF(y));
+                if(total < best){
+                    best = total;
+                    meet = y;
+                }
+            }
+        }
+        if(meet == -1) return null;
+
+        // forward half: collect the edges from meet down to s, then unpack them in travel order
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        IntList up = new IntList();
+        for(int x = meet; q.edgeF[x] != -1; x = other(q.edgeF[x], x))
+            up.add(q.edgeF[x]);
+        int from = s;
+        for(int i = up.size()-1; i >= 0; i--){
+            int e = up.get(i);
+            unpack(e, from, path, q.stack);
+            from = other(e, from);
+        }
+        // backward half: from meet up to t
+        for(int x = meet; q.edgeB[x] != -1; x = other(q.edgeB[x], x))
+            unpack(q.edgeB[x], x, path, q.stack);
+        return new Route(best, path);
+    }
+
+    /* weights of the shortest routes from every source to every target, +Infinity if there is none;
+       each target leaves (target, weight) entries in the buckets of the vertices its upward search
+       settles, and then one upward search per source scans the buckets of the vertices it settles */
+    public double[][] table(int[] sources, int[] targets, ForkJoinPool pool) {
+        final double[][] table = new double[sources.length][targets.length];
+        for(double[] row : table) java.util.Arrays.fill(row, Double.POSITIVE_INFINITY);
+
+        // backward searches, the bucket entries are sorted by vertex into CSR arrays
+        Query q = queries.get();
+        IntList settled = new IntList(), entryV = new IntList(), entryT = new IntList();
+        double[] entryW = new double[16];
+        for(int j = 0; j < targets.length; j++){
+            upward(targets[j], q, settled);
+            for(int i = 0; i < settled.size(); i++){
+                int u = settled.get(i);
+                if(entryV.size() == entryW.length) entryW = java.util.Arrays.copyOf(entryW, 2*entryW.length);
+                entryW[entryV.size()] = q.distF[u];
+                entryV.add(u);
+                entryT.add(j);
+            }
+        }
+        final int[] bucketOffsets = new int[V+1];
+        for(int i = 0; i < entryV.size(); i++)
+            bucketOffsets[entryV.get(i)+1]++;
+        for(int v = 0; v < V; v++)
+            bucketOffsets[v+1] += bucketOffsets[v];
+        final int[] bucketT = new int[entryV.size()];
+        final double[] bucketW = new double[entryV.size()];
+        int[] next = java.util.Arrays.copyOf(bucketOffsets, V);
+        for(int i = 0; i < entryV.size(); i++){
+            int k = next[entryV.get(i)]++;
+            bucketT[k] = entryT.get(i);
+            bucketW[k] = entryW[i];
+        }
+
+        // forward searches, independent of each other
+        ParallelRange.run(pool, 0, sources.length, 1, (lo, hi) -> {
+            Query fq = queries.get();
+            IntList reached = new IntList();
+            for(int i = lo; i < hi; i++){
+                upward(sources[i], fq, reached);
+                double[] row = table[i];
+                for(int r = 0; r < reached.size(); r++){
+                    int u = reached.get(r);
+                    double du = fq.distF[u];
+                    for(int k = bucketOffsets[u], end = bucketOffsets[u+1]; k < end; k++)
+                        if(du + bucketW[k] < row[bucketT[k]]) row[bucketT[k]] = du + bucketW[k];
+                }
+            }
+        });
+        return table;
+    }
+
+    // Dijkstra's algorithm from s over the upward graph, settled gets the vertices in the order they
+    // are settled and q.distF their weights
+    private void upward(int s, Query q, IntList settled) {
+        settled.clear();
+        q.epoch++;
+        q.fq.clear();
+        q.stampF[s] = q.epoch; q.distF[s] = 0;
+        q.fq.insert(s, 0);
+        while(!q.fq.isEmpty()){
+            int x = q.fq.delMin();
+            settled.add(x);
+            for(int i = upOffsets[x], end = upOffsets[x+1]; i < end; i++){
+                int e = upEdges[i];
+                int y = other(e, x);
+                double d = q.distF[x] + weight[e];
+                if(q.stampF[y] == q.epoch && q.distF[y] <= d) continue;
+                q.stampF[y] = q.epoch;
+                q.distF[y] = d;
+                if(q.fq.contains(y)) q.fq.decreaseKey(y, d);
+                else                 q.fq.insert(y, d);
+            }
+        }
+    }
+
+    // append the original routes of hierarchy edge e, walked starting at its endpoint from
+    private void unpack(int e, int from, LinkedList<Edge> out, IntList stack) {
+        stack.clear();
+        stack.add(e);
+        stack.add(from);
+        while(!stack.isEmpty()){
+            int f = stack.pop();
+            int x = stack.pop();
+            if(arc[x] >= 0){
+                out.add(G.edge(arc[x]));
+                continue;
+            }
+            int first = f == tail[x] ? half1[x] : half2[x];
+            int second = f == tail[x] ? half2[x] : half1[x];
+            stack.add(second);     // pushed first, so it is unpacked after the first half
+            stack.add(mid[x]);
+            stack.add(first);
+            stack.add(f);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*************************************************************************
+ *  Description: shortest paths from s to every vertex by distance       *
+ *               (option 0) or price (option 1), parallel delta-stepping *
+ *                                                                       *
+ *  Vertices are kept in buckets of width delta by their tentative       *
+ *  weight. The lowest bucket is settled in phases: its vertices relax   *
+ *  their light arcs (weight <= delta) in parallel, which may put        *
+ *  vertices back into the same bucket for another phase, and once the   *
+ *  bucket stays empty all the vertices it held relax their heavy arcs   *
+ *  in parallel. Weights are lowered by compare-and-set on their bits    *
+ *  (nonnegative doubles order like their bits as longs), each task      *
+ *  records the vertices it improved in its own list, and the buckets    *
+ *  are only touched between phases, by the calling thread.              *
+ *                                                                       *
+ *  Every weight ends up as the smallest sum over a path, the same value *
+ *  dijkstraSP computes. Each improvement also writes its arc, without   *
+ *  synchronization, so the arcs are checked afterwards, in parallel:    *
+ *  the arc a vertex was last lowered over is kept if it fits the final  *
+ *  weights, and otherwise (a lost race, or a route of weight 0) the     *
+ *  vertex takes the tight arc from its lightest neighbour; vertices     *
+ *  reached only over routes of weight 0 are then attached to vertices   *
+ *  already in the tree. So edgeTo gives a shortest path tree, the one   *
+ *  of dijkstraSP unless equal weights tie.                              *
+ *                                                                       *
+ *  A small delta does little work per phase but needs many phases, a   *
+ *  large one approaches Bellman-Ford; defaultDelta picks the largest    *
+ *  weight over the average degree, Meyer and Sanders' rule of thumb.    *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class DeltaStepping {
+    private static final int GRAIN = 256;       // frontier vertices per task
+    private static final long INF = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+
+    private final CompactGraph G;
+    private final int option;
+    private final double delta;                 // bucket width
+    private final ForkJoinPool pool;            // runs the phases, null for the calling thread
+    private final int s;
+    private final AtomicLongArray dist;         // bits of the weight of the best known path to v
+    private final int[] edgeTo;                 // edgeTo[v] = last arc of a shortest path to v, -1 if none
+
+    // bucket bookkeeping, only touched by the calling thread between phases
+    private final ArrayList<IntList> buckets = new ArrayList<IntList>();
+    private final int[] where;                  // where[v] = bucket v is queued in, -1 if none
+    private final int[] settled;                // settled[v] = 1 + the last bucket v relaxed its arcs in
+    private IntList[] out = new IntList[0];     // out[c] = vertices task c improved
+
+    /* run delta-stepping from s with buckets of width delta, on pool (null for the calling thread) */
+    public DeltaStepping(CompactGraph G, int option, int s, double delta, ForkJoinPool pool) {
+        if (option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        if (!(delta > 0)) throw new IllegalArgumentException("Bucket width must be positive");
+        this.G = G;
+        this.option = option;
+        this.s = s;
+        this.delta = delta;
+        this.pool = pool;
+        int V = G.V();
+        dist = new AtomicLongArray(V);
+        for (int v = 0; v < V; v++) dist.set(v, INF);
+        edgeTo = new int[V];
+        where = new int[V];
+        settled = new int[V];
+        Arrays.fill(where, -1);
+        Arrays.fill(edgeTo, -1);
+
+        dist.set(s, Double.doubleToLongBits(0));
+        queue(s);
+        int[] frontier = new int[V];
+        IntList done = new IntList();           // vertices the current bucket held
+        for (int i = 0; i < buckets.size(); i++) {
+            IntList b = buckets.get(i);
+            if (b == null) continue;
+            done.clear();
+            while (!b.isEmpty()) {
+                // take the vertices still queued here, then relax their light arcs
+                int n = 0;
+                for (int k = 0; k < b.size(); k++) {
+                    int v = b.get(k);
+                    if (where[v] != i) continue;
+                    where[v] = -1;
+                    frontier[n++] = v;
+                    if (settled[v] != i + 1) { settled[v] = i + 1; done.add(v); }
+                }
+                b.clear();
+                relax(frontier, n, true);
+            }
+            buckets.set(i, null);
+            int n = done.size();
+            for (int k = 0; k < n; k++) frontier[k] = done.get(k);
+            relax(frontier, n, false);
+        }
+        parents();
+    }
+
+    /* run it with the default bucket width, on the common pool */
+    public DeltaStepping(CompactGraph G, int option, int s) {
+        this(G, option, s, defaultDelta(G, option), ForkJoinPool.commonPool());
+    }
+
+    /* the largest arc weight over the average degree, and at least the smallest positive weight */
+    public static double defaultDelta(CompactGraph G, int option) {
+        int A = 2 * G.E();
+        double max = 0, min = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < A; a++) {
+            double w = G.weight(a, option);
+            if (w > max) max = w;
+            if (w > 0 && w < min) min = w;
+        }
+        if (max == 0) return 1;
+        double degree = G.V() == 0 ? 1 : (double) A / G.V();
+        return Math.max(max / Math.max(degree, 1), min);
+    }
+
+    // relax the light (or heavy) arcs of frontier[0 .. n-1] in parallel, then queue the improved vertices
+    private void relax(int[] frontier, int n, boolean light) {
+        int tasks = (n + GRAIN - 1) / GRAIN;
+        if (out.length < tasks) {
+            int old = out.length;
+            out = Arrays.copyOf(out, Math.max(tasks, 2 * old));
+            for (int c = old; c < out.length; c++) out[c] = new IntList();
+        }
+        ParallelRange.run(pool, 0, tasks, 1, (lo, hi) -> {
+            for (int c = lo; c < hi; c++) {
+                IntList improved = out[c];
+                improved.clear();
+                for (int k = c * GRAIN, end = Math.min(n, k + GRAIN); k < end; k++) {
+                    int v = frontier[k];
+                    double dv = Double.longBitsToDouble(dist.get(v));
+                    for (int a = G.begin(v), e = G.end(v); a < e; a++) {
+                        double w = G.weight(a, option);
+                        if ((w <= delta) != light) continue;
+                        int x = G.target(a);
+                        if (lower(x, dv + w)) {
+                            edgeTo[x] = a;
+                            improved.add(x);
+                        }
+                    }
+                }
+            }
+        });
+        for (int c = 0; c < tasks; c++) {
+            IntList improved = out[c];
+            for (int k = 0; k < improved.size(); k++) queue(improved.get(k));
+        }
+    }
+
+    // lower the weight of v to d if that is an improvement, true if it was
+    private boolean lower(int v, double d) {
+        long bits = Double.doubleToLongBits(d);
+        for (long cur = dist.get(v); bits < cur; cur = dist.get(v))
+            if (dist.compareAndSet(v, cur, bits)) return true;
+        return false;
+    }
+
+    // move v to the bucket of its current weight, unless it is queued there already
+    private void queue(int v) {
+        int i = (int) Math.min(Double.longBitsToDouble(dist.get(v)) / delta, Integer.MAX_VALUE - 1);
+        if (where[v] == i) return;
+        where[v] = i;
+        while (buckets.size() <= i) buckets.add(null);
+        if (buckets.get(i) == null) buckets.set(i, new IntList());
+        buckets.get(i).add(v);
+    }
+
+    // check the last arc of every reached vertex against the final weights, and fix it where it does not fit
+    private void parents() {
+        int V = G.V();
+        ParallelRange.run(pool, 0, V, 4096, (lo, hi) -> {
+            for (int v = lo; v < hi; v++) {
+                double dv = distTo(v);
+                if (v == s || dv == Double.POSITIVE_INFINITY) { edgeTo[v] = -1; continue; }
+                int last = edgeTo[v];
+                if (last != -1) {
+                    double du = distTo(G.source(last));
+                    if (du < dv && du + G.weight(last, option) == dv) continue;
+                }
+                edgeTo[v] = -1;
+                int best = -1;
+                double first = dv;              // weight of the tight neighbour Dijkstra would settle first
+                for (int a = G.begin(v), end = G.end(v); a < end; a++) {
+                    double du = distTo(G.target(a));
+                    if (du < first && du + G.weight(a, option) == dv) { best = a; first = du; }
+                }
+                if (best != -1) edgeTo[v] = reverse(best, v, G.target(best));
+            }
+        });
+
+        // vertices only reached over routes of weight 0 from vertices of the same weight
+        IntList left = new IntList();
+        for (int v = 0; v < V; v++)
+            if (v != s && edgeTo[v] == -1 && hasPathTo(v)) left.add(v);
+        while (!left.isEmpty()) {
+            int n = 0;
+            for (int k = 0; k < left.size(); k++) {
+                int v = left.get(k);
+                double dv = distTo(v);
+                boolean found = false;
+                for (int a = G.begin(v), end = G.end(v); a < end && !found; a++) {
+                    int u = G.target(a);
+                    if ((u == s || edgeTo[u] != -1) && distTo(u) + G.weight(a, option) == dv) {
+                        edgeTo[v] = reverse(a, v, u);
+                        found = true;
+                    }
+                }
+                if (!found) left.set(n++, v);
+            }
+            if (n == left.size()) break;        // cannot happen with nonnegative weights
+            left.truncate(n);
+        }
+    }
+
+    // the arc of the same route as a (from v to u), from u into v
+    private int reverse(int a, int v, int u) {
+        Edge e = G.edge(a);
+        double w = G.weight(a, option);
+        int best = -1;
+        for (int b = G.begin(u), end = G.end(u); b < end; b++) {
+            if (G.target(b) != v) continue;
+            if (G.edge(b) == e) return b;
+            if (best == -1 && G.weight(b, option) == w) best = b;
+        }
+        return best;
+    }
+
+    // getters
+    public int source() {
+        return s;
+    }
+
+    public double delta() {
+        return delta;
+    }
+
+    public double distTo(int v) {
+        return Double.longBitsToDouble(dist.get(v));
+    }
+
+    /* last arc of the shortest path to v in graph(), -1 if none */
+    public int edgeTo(int v) {
+        return edgeTo[v];
+    }
+
+    public boolean hasPathTo(int v) {
+        return dist.get(v) != INF;
+    }
+
+    /* the shortest path to v, in travel order, null if there is none */
+    public Iterable<Edge> pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        for (int a; (a = edgeTo[v]) != -1; v = G.other(a, v))
+            path.addFirst(G.edge(a));
+        return path;
+    }
+
+    // the snapshot the arc ids returned by edgeTo refer to
+    public CompactGraph graph() {
+        return G;
+    }
+}
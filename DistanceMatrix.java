@@ -0,0 +1,132 @@
+/*************************************************************************
+ *  Description: an origin x destination table of shortest path weights *
+ *               kept off the heap in a memory-mapped file               *
+ *                                                                       *
+ *  Layout (big-endian, like RouteFile):                                 *
+ *    header     magic, version, V, option, 4 reserved ints              *
+ *    matrix     float[V*V]   row-major, entry (s,t) at s*V+t,           *
+ *                            +Infinity if t is unreachable from s       *
+ *                                                                       *
+ *  Any process can map the file and read single entries without        *
+ *  loading the table; rows are mapped in segments of at most 1GB, so   *
+ *  the table may exceed the 2GB limit of one mapping.                  *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class DistanceMatrix {
+    public static final int MAGIC = 0x444D5831;  // "DMX1"
+    public static final int VERSION = 1;
+    private static final int HEADER = 32;        // header size in bytes
+    private static final long SEGMENT = 1L << 30; // maximum bytes per mapping
+
+    private final int V;                  // number of vertices
+    private final int option;             // 0 - distance, 1 - price, 2 - hops
+    private final int rows;               // rows per segment
+    private final MappedByteBuffer[] maps;  // mapped segments, kept to flush them
+    private final FloatBuffer[] segments; // segments[i] holds rows i*rows .. (i+1)*rows-1
+
+    private DistanceMatrix(FileChannel ch, FileChannel.MapMode mode, int V, int option) throws IOException {
+        this.V = V;
+        this.option = option;
+        long rowBytes = Math.max(4L*V, 4);
+        this.rows = (int) Math.max(1, SEGMENT / rowBytes);
+        int n = V == 0 ? 0 : (V + rows - 1) / rows;
+        maps = new MappedByteBuffer[n];
+        segments = new FloatBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long first = (long) i * rows;
+            long size = Math.min(rows, V - first) * 4L * V;
+            maps[i] = ch.map(mode, HEADER + first * 4L * V, size);   // stays valid after the channel is closed
+            segments[i] = maps[i].asFloatBuffer();
+        }
+    }
+
+    /* create a file for a V x V table, every entry +Infinity except the zero diagonal */
+    public static DistanceMatrix create(String filename, int V, int option) throws IOException {
+        if (V < 0) throw new IllegalArgumentException("Number of vertices must be nonnegative");
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(V).putInt(option);
+            header.clear();
+            while (header.hasRemaining()) ch.write(header);
+            DistanceMatrix M = new DistanceMatrix(ch, FileChannel.MapMode.READ_WRITE, V, option);
+            float[] row = new float[V];
+            for (int s = 0; s < V; s++) {
+                java.util.Arrays.fill(row, Float.POSITIVE_INFINITY);
+                row[s] = 0;
+                M.putRow(s, row);
+            }
+            return M;
+        }
+    }
+
+    /* map an existing table for reading */
+    public static DistanceMatrix open(String filename) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && ch.read(header) >= 0);
+            header.flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC)
+                throw new IOException(filename+" is not a distance matrix file");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported distance matrix version "+version);
+            int V = header.getInt();
+            int option = header.getInt();
+            if (V < 0) throw new IOException("Corrupted distance matrix header");
+            if (ch.size() < HEADER + 4L * V * V) throw new IOException("Truncated distance matrix "+filename);
+            return new DistanceMatrix(ch, FileChannel.MapMode.READ_ONLY, V, option);
+        }
+    }
+
+    // getters
+    public int V() {
+        return V;
+    }
+
+    public int option() {
+        return option;
+    }
+
+    /* weight of the shortest path from s to t */
+    public float get(int s, int t) {
+        return segments[s / rows].get((s % rows) * V + t);
+    }
+
+    public void set(int s, int t, float x) {
+        segments[s / rows].put((s % rows) * V + t, x);
+    }
+
+    /* copy len entries of row s starting at column t into dst[off..], safe to call from several threads */
+    public void getRow(int s, int t, float[] dst, int off, int len) {
+        segments[s / rows].get((s % rows) * V + t, dst, off, len);
+    }
+
+    public void getRow(int s, float[] dst) {
+        getRow(s, 0, dst, 0, V);
+    }
+
+    /* overwrite len entries of row s starting at column t, threads must write disjoint ranges */
+    public void putRow(int s, int t, float[] src, int off, int len) {
+        segments[s / rows].put((s % rows) * V + t, src, off, len);
+    }
+
+    public void putRow(int s, float[] src) {
+        putRow(s, 0, src, 0, V);
+    }
+
+    /* write the changes through to the file */
+    public void force() {
+        for (MappedByteBuffer m : maps)
+            if (!m.isReadOnly()) m.force();
+    }
+}
@@ -0,0 +1,183 @@
+/*************************************************************************
+ *  Description: single-source shortest paths kept up to date while      *
+ *               routes are added, removed or repriced                   *
+ *               option 0 - distance, 1 - price, 2 - hops                *
+ *                                                                       *
+ *  The tree is computed once by ShortestPath and then repaired after    *
+ *  each change in the style of Ramalingam and Reps:                     *
+ *    - a route that gets cheaper (a new one, or a lower weight) is      *
+ *      relaxed, and Dijkstra's algorithm continues only from the        *
+ *      vertices whose distance drops                                    *
+ *    - a tree edge that disappears or gets dearer invalidates the       *
+ *      subtree below it; those vertices are seeded from their           *
+ *      neighbours outside the subtree and settled again by Dijkstra's   *
+ *      algorithm, the rest of the tree is not touched                   *
+ *  so the work is proportional to the affected part of the tree.        *
+ *                                                                       *
+ *  RouteGraph notifies the trees returned by RouteGraph.maintain after  *
+ *  it has applied a change to its adjacency lists.                      *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Deque;
+import java.util.LinkedList;
+
+public class DynamicShortestPath {
+    private final RouteGraph G;
+    private final int s;              // source
+    private final int option;
+    private final double[] distTo;    // distTo[v] = weight of the shortest path s -> v
+    private final Edge[] edgeTo;      // edgeTo[v] = last edge of that path, null if none
+    private final IndexMinPQ pq;      // empty between updates
+    private final boolean[] affected; // vertices of the subtree being repaired, false between updates
+    private final IntList subtree = new IntList();
+
+    /* constructor, computes the tree from s */
+    public DynamicShortestPath(RouteGraph G, int s, int option){
+        this.G = G;
+        this.s = s;
+        this.option = option;
+        int V = G.V();
+        distTo = new double[V];
+        edgeTo = new Edge[V];
+        pq = new IndexMinPQ(V);
+        affected = new boolean[V];
+
+        ShortestPath sp = new ShortestPath(G, option, SearchWorkspace.forThread(V));
+        if(option == 2) sp.bfsSP(s);
+        else            sp.dijkstraSP(s);
+        CompactGraph C = sp.graph();
+        for(int v = 0; v < V; v++){
+            distTo[v] = sp.distTo(v);
+            int a = sp.edgeTo(v);
+            edgeTo[v] = a == -1 ? null : C.edge(a);
+        }
+    }
+
+    private double weight(Edge e) {
+        return option == 2 ? 1 : e.weight(option);
+    }
+
+    /* repair the tree after e was added to the graph */
+    public void added(Edge e){
+        improve(e);
+    }
+
+    /* repair the tree after the route between v and w was removed from the graph */
+    public void removed(int v, int w){
+        int child = child(v, w);
+        if(child == -1) return;    // not a tree edge, no distance changes
+        edgeTo[child] = null;
+        rebuild(child);
+    }
+
+    /* repair the tree after route old was replaced by e, which joins the same cities */
+    public void changed(Edge old, Edge e){
+        int child = child(old.v(), old.w());
+        if(child != -1) edgeTo[child] = e;      // the tree refers to the current edge object
+        double delta = weight(e) - weight(old);
+        if(delta < 0) improve(e);
+        else if(delta > 0 && child != -1) rebuild(child);
+    }
+
+    // the endpoint of route v-w whose tree edge it is, -1 if it is not a tree edge
+    private int child(int v, int w) {
+        if(edgeTo[w] != null && edgeTo[w].other(w) == v) return w;
+        if(edgeTo[v] != null && edgeTo[v].other(v) == w) return v;
+        return -1;
+    }
+
+    // relax both directions of e and propagate any decrease
+    private void improve(Edge e){
+        int v = e.v(), w = e.w();
+        double x = weight(e);
+        if(distTo[v] + x < distTo[w]) label(w, distTo[v] + x, e);
+        else if(distTo[w] + x < distTo[v]) label(v, distTo[w] + x, e);
+        settle();
+    }
+
+    // the subtree rooted at root lost its tree path or got a dearer one, compute it again
+    private void rebuild(int root){
+        // collect the subtree, the children of u are the neighbours whose tree edge leads to u
+        subtree.add(root);
+        affected[root] = true;
+        for(int i = 0; i < subtree.size(); i++){
+            int u = subtree.get(i);
+            for(Edge f : G.adj(u)){
+                int x = f.other(u);
+                if(!affected[x] && edgeTo[x] != null && edgeTo[x].other(x) == u){
+                    affected[x] = true;
+                    subtree.add(x);
+                }
+            }
+        }
+
+        // distances outside the subtree stay, seed each affected vertex from its best outside neighbour
+        for(int i = 0; i < subtree.size(); i++){
+            int u = subtree.get(i);
+            distTo[u] = Double.POSITIVE_INFINITY;
+            edgeTo[u] = null;
+        }
+        for(int i = 0; i < subtree.size(); i++){
+            int u = subtree.get(i);
+            for(Edge f : G.adj(u)){
+                int x = f.other(u);
+                if(!affected[x] && distTo[x] + weight(f) < distTo[u]) label(u, distTo[x] + weight(f), f);
+            }
+        }
+        for(int i = 0; i < subtree.size(); i++)
+            affected[subtree.get(i)] = false;
+        subtree.clear();
+        settle();
+    }
+
+    // set the label of v and queue it
+    private void label(int v, double d, Edge e){
+        distTo[v] = d;
+        edgeTo[v] = e;
+        if(pq.contains(v)) pq.decreaseKey(v, d);
+        else               pq.insert(v, d);
+    }
+
+    // Dijkstra's algorithm from the queued vertices, only vertices whose distance drops are touched
+    private void settle(){
+        while(!pq.isEmpty()){
+            int v = pq.delMin();
+            for(Edge f : G.adj(v)){
+                int w = f.other(v);
+                double d = distTo[v] + weight(f);
+                if(d < distTo[w]) label(w, d, f);
+            }
+        }
+    }
+
+    // getters
+    public int source() {
+        return s;
+    }
+
+    public int option() {
+        return option;
+    }
+
+    public double distTo(int v) {
+        return distTo[v];
+    }
+
+    public Edge edgeTo(int v) {
+        return edgeTo[v];
+    }
+
+    public boolean hasPathTo(int v) {
+        return distTo[v] < Double.POSITIVE_INFINITY;
+    }
+
+    // return the shortest path as a stack of edges
+    public Iterable<Edge> pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        Deque<Edge> path = new LinkedList<Edge>();
+        for(Edge e; (e=edgeTo[v]) != null; v = e.other(v))
+            path.push(e);
+        return path;
+    }
+}
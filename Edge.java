@@ -4,7 +4,6 @@ public class Edge{
     private int w;           // vertex with bigger id
     private double distance; // distance weight
     private double price;    // price weight
-    private String key;      // "v:w" is a key
     
     // constructor
     public Edge(int v, int w, double distance, double price){
@@ -25,7 +24,6 @@ public class Edge{
         
         this.distance = distance;
         this.price = price;
-        this.key = v+":"+w;
     }
     
     // getters
@@ -52,10 +50,6 @@ public class Edge{
         return w;
     }
     
-    public String key() {
-        return key;
-    }
-    
     public boolean equals(Edge e) {
         return this.v==e.v() && this.w==e.w() || this.v==e.w() && this.w==e.v();
     }
@@ -0,0 +1,254 @@
+/*************************************************************************
+ *  Description: the mutable routes of a RouteGraph in flat arrays, with *
+ *               a primitive edge index and constant time removal        *
+ *                                                                       *
+ *  Route i joins v(i) < w(i); its endpoints and weights sit in parallel *
+ *  arrays next to the Edge that snapshots and paths hand out. The       *
+ *  routes of a city are a list of route ids, and every route knows its  *
+ *  position in the lists of both its ends, so a removal swaps the last  *
+ *  id of each list into the gap, and the last route into the freed id,  *
+ *  without searching. Lists are read from the back, newest route first  *
+ *  as before, which a swap-removal leaves in the same order.            *
+ *                                                                       *
+ *  The index finds the route between two cities from the long key       *
+ *  v << 32 | w, in an open addressing table with linear probing; a      *
+ *  removal shifts the following keys back, so no tombstones build up.   *
+ *  Adding, finding and removing a route allocate nothing but the        *
+ *  occasional doubling of an array.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class EdgeStore {
+    private static final long EMPTY = -1;     // key of a free index slot
+
+    private final int V;
+    private int E;                            // number of routes, ids 0 .. E-1
+    private int[] ev, ew;                     // ends of route i, ev[i] < ew[i]
+    private double[] distance, price;
+    private Edge[] edge;
+    private int[] pos;                        // pos[2*i] = position of i in the list of ev[i], pos[2*i+1] in that of ew[i]
+    private final IntList[] adj;              // adj[v] = ids of the routes of v, oldest first
+
+    // index: keys[k] = key of route vals[k], or EMPTY
+    private long[] keys;
+    private int[] vals;
+    private int mask;
+
+    /* no routes between V cities, room for capacity of them before growing */
+    public EdgeStore(int V, int capacity) {
+        if (V < 0) throw new IllegalArgumentException("Number of vertices must be nonnegative");
+        this.V = V;
+        capacity = Math.max(capacity, 4);
+        ev = new int[capacity];
+        ew = new int[capacity];
+        distance = new double[capacity];
+        price = new double[capacity];
+        edge = new Edge[capacity];
+        pos = new int[2 * capacity];
+        adj = new IntList[V];
+        for (int v = 0; v < V; v++) adj[v] = new IntList(4);
+        int slots = Integer.highestOneBit(2 * capacity - 1) << 1;   // at most half full
+        keys = new long[slots];
+        vals = new int[slots];
+        Arrays.fill(keys, EMPTY);
+        mask = slots - 1;
+    }
+
+    /* add e, return its id, or -1 if its cities are joined already */
+    public int add(Edge e) {
+        int v = e.v(), w = e.w();
+        long key = key(v, w);
+        int k = slot(key);
+        if (keys[k] != EMPTY) return -1;
+        if (E == ev.length) grow();
+        int i = E++;
+        keys[k] = key;
+        vals[k] = i;
+        if (2 * E > keys.length) rehash();
+        ev[i] = v;
+        ew[i] = w;
+        distance[i] = e.distance();
+        price[i] = e.price();
+        edge[i] = e;
+        pos[2*i] = adj[v].size();
+        adj[v].add(i);
+        pos[2*i+1] = adj[w].size();
+        adj[w].add(i);
+        return i;
+    }
+
+    /* id of the route between v and w, -1 if there is none */
+    public int find(int v, int w) {
+        if (v == w) return -1;
+        int k = slot(key(Math.min(v, w), Math.max(v, w)));
+        return keys[k] == EMPTY ? -1 : vals[k];
+    }
+
+    /* remove the route between v and w, return it or null if there is none; the last
+       route takes over its id */
+    public Edge remove(int v, int w) {
+        int i = find(v, w);
+        if (i == -1) return null;
+        Edge e = edge[i];
+        unlink(ev[i], pos[2*i]);
+        unlink(ew[i], pos[2*i+1]);
+        delete(slot(key(ev[i], ew[i])));
+
+        int last = --E;
+        if (i != last) {
+            ev[i] = ev[last];
+            ew[i] = ew[last];
+            distance[i] = distance[last];
+            price[i] = price[last];
+            edge[i] = edge[last];
+            pos[2*i] = pos[2*last];
+            pos[2*i+1] = pos[2*last+1];
+            adj[ev[i]].set(pos[2*i], i);
+            adj[ew[i]].set(pos[2*i+1], i);
+            vals[slot(key(ev[i], ew[i]))] = i;
+        }
+        edge[last] = null;
+        return e;
+    }
+
+    /* put e in place of the route between the same cities, return the old one or null if there is none */
+    public Edge replace(Edge e) {
+        int i = find(e.v(), e.w());
+        if (i == -1) return null;
+        Edge old = edge[i];
+        distance[i] = e.distance();
+        price[i] = e.price();
+        edge[i] = e;
+        return old;
+    }
+
+    // fill position p of the list of v with its last id
+    private void unlink(int v, int p) {
+        IntList list = adj[v];
+        int n = list.size() - 1, j = list.get(n);
+        list.set(p, j);
+        pos[ev[j] == v ? 2*j : 2*j+1] = p;
+        list.truncate(n);
+    }
+
+    // the slot holding key, or the free slot where it would go
+    private int slot(long key) {
+        int k = hash(key);
+        while (keys[k] != EMPTY && keys[k] != key) k = (k + 1) & mask;
+        return k;
+    }
+
+    // free slot k, moving back the keys after it that could not get a slot before it
+    private void delete(int k) {
+        for (int j = (k + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = hash(keys[j]);
+            if (((j - home) & mask) >= ((j - k) & mask)) {   // k lies between home and j
+                keys[k] = keys[j];
+                vals[k] = vals[j];
+                k = j;
+            }
+        }
+        keys[k] = EMPTY;
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private static long key(int v, int w) {
+        return (long) v << 32 | w;
+    }
+
+    private void grow() {
+        int n = 2 * ev.length;
+        ev = Arrays.copyOf(ev, n);
+        ew = Arrays.copyOf(ew, n);
+        distance = Arrays.copyOf(distance, n);
+        price = Arrays.copyOf(price, n);
+        edge = Arrays.copyOf(edge, n);
+        pos = Arrays.copyOf(pos, 2 * n);
+    }
+
+    private void rehash() {
+        long[] old = keys;
+        int[] oldVals = vals;
+        keys = new long[2 * old.length];
+        vals = new int[keys.length];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        for (int k = 0; k < old.length; k++) {
+            if (old[k] == EMPTY) continue;
+            int j = slot(old[k]);
+            keys[j] = old[k];
+            vals[j] = oldVals[k];
+        }
+    }
+
+    // getters
+    public int V() {
+        return V;
+    }
+
+    public int E() {
+        return E;
+    }
+
+    public int degree(int v) {
+        return adj[v].size();
+    }
+
+    /* id of the i-th route of v, newest first */
+    public int route(int v, int i) {
+        IntList list = adj[v];
+        return list.get(list.size() - 1 - i);
+    }
+
+    /* the smaller end of route i */
+    public int v(int i) {
+        return ev[i];
+    }
+
+    /* the bigger end of route i */
+    public int w(int i) {
+        return ew[i];
+    }
+
+    /* the end of route i that is not x */
+    public int other(int i, int x) {
+        return ev[i] == x ? ew[i] : ev[i];
+    }
+
+    public double distance(int i) {
+        return distance[i];
+    }
+
+    public double price(int i) {
+        return price[i];
+    }
+
+    public Edge edge(int i) {
+        return edge[i];
+    }
+
+    /* the routes of v, newest first */
+    public Iterable<Edge> adj(int v) {
+        IntList list = adj[v];
+        return () -> new Iterator<Edge>() {
+            private int k = list.size();
+
+            public boolean hasNext() {
+                return k > 0;
+            }
+
+            public Edge next() {
+                if (k == 0) throw new NoSuchElementException();
+                return edge[list.get(--k)];
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+/*************************************************************************
+ *  Description: indexed min priority queue on a 4-ary heap              *
+ *                                                                       *
+ *  The keys are kept in heap order next to the items, instead of being  *
+ *  looked up through the item on every comparison, so the four children *
+ *  of a node are compared within one cache line and the heap is half as *
+ *  deep as a binary one.                                                *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.NoSuchElementException;
+
+public class FourAryPQ implements IndexPQ {
+    private final int max;          // the maximum number of items
+    private int n;                  // current number of items
+    private final double[] key;     // key[k] = key of the item at heap position k
+    private final int[] item;       // item[k] = item at heap position k, the root is at 0
+    private final int[] pos;        // pos[i] = heap position of item i, -1 if not in the queue
+
+    /* constructor */
+    public FourAryPQ(int max){
+        if (max < 0) throw new IllegalArgumentException();
+        this.max = max;
+        key = new double[max];
+        item = new int[max];
+        pos = new int[max];
+        java.util.Arrays.fill(pos, -1);
+    }
+
+    public void insert(int i, double k) {
+        if (contains(i)) throw new IllegalArgumentException("index is already in the priority queue");
+        swim(n++, i, k);
+    }
+
+    public int delMin() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        int min = item[0];
+        pos[min] = -1;
+        if (--n > 0) sink(0, item[n], key[n]);
+        return min;
+    }
+
+    public double minKey() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        return key[0];
+    }
+
+    // a key that is not smaller than the current one is ignored
+    public void decreaseKey(int i, double k) {
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        int p = pos[i];
+        if (k < key[p]) swim(p, i, k);
+    }
+
+    public void clear() {
+        for (int k = 0; k < n; k++)
+            pos[item[k]] = -1;
+        n = 0;
+    }
+
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    public boolean contains(int i) {
+        if (i < 0 || i >= max) throw new IndexOutOfBoundsException();
+        return pos[i] != -1;
+    }
+
+    // move the hole at position p up until item i with key k fits, and put it there
+    private void swim(int p, int i, double k) {
+        while (p > 0) {
+            int parent = (p - 1) >> 2;
+            if (key[parent] <= k) break;
+            place(p, item[parent], key[parent]);
+            p = parent;
+        }
+        place(p, i, k);
+    }
+
+    // move the hole at position p down until item i with key k fits, and put it there
+    private void sink(int p, int i, double k) {
+        while (true) {
+            int first = 4*p + 1;
+            if (first >= n) break;
+            int last = Math.min(first + 4, n);
+            int c = first;
+            double ck = key[first];
+            for (int j = first + 1; j < last; j++)
+                if (key[j] < ck) { c = j; ck = key[j]; }
+            if (k <= ck) break;
+            place(p, item[c], ck);
+            p = c;
+        }
+        place(p, i, k);
+    }
+
+    private void place(int p, int i, double k) {
+        item[p] = i;
+        key[p] = k;
+        pos[i] = p;
+    }
+}
@@ -0,0 +1,136 @@
+/*************************************************************************
+ *  Description: shortest paths from s with at most k routes (hops),     *
+ *               for every k up to a limit, in one run                   *
+ *               option 0 - distance, 1 - price                          *
+ *                                                                       *
+ *  Bellman-Ford cut off after the hop limit: round k relaxes the arcs   *
+ *  of the vertices whose weight changed in round k-1, from the weight   *
+ *  they had then, so after round k every vertex holds its shortest      *
+ *  path of at most k hops. Instead of a V x k table, each improvement   *
+ *  is recorded once (vertex, round, weight, last arc, and the vertex's  *
+ *  previous record), in primitive arrays; the records of one round are  *
+ *  the frontier of the next, and a vertex improved again in the same    *
+ *  round overwrites its record of that round. The run stops early when  *
+ *  a round changes nothing.                                             *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+public class HopLimitedShortestPath {
+    private final CompactGraph G;
+    private final int option;
+    private final int s;
+    private final int hops;         // the hop limit
+
+    // improvement records
+    private int n;
+    private int[] vertex = new int[64], round = new int[64], arc = new int[64], prev = new int[64];
+    private double[] dist = new double[64];
+    private final int[] last;       // last[v] = latest record of v, -1 if v was not reached
+
+    /* run the rounds from s, up to hops of them */
+    public HopLimitedShortestPath(CompactGraph G, int option, int s, int hops) {
+        if (option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        if (hops < 0) throw new IllegalArgumentException("Hop limit must be nonnegative");
+        this.G = G;
+        this.option = option;
+        this.s = s;
+        this.hops = hops;
+        last = new int[G.V()];
+        Arrays.fill(last, -1);
+
+        record(s, 0, 0, -1);
+        int lo = 0, hi = n;                      // records of the previous round
+        for (int k = 1; k <= hops && lo < hi; k++) {
+            for (int r = lo; r < hi; r++) {
+                int u = vertex[r];
+                double du = dist[r];             // the weight u had after round k-1
+                for (int a = G.begin(u), end = G.end(u); a < end; a++) {
+                    int w = G.target(a);
+                    double d = du + G.weight(a, option);
+                    int l = last[w];
+                    if (l != -1 && dist[l] <= d) continue;
+                    if (l != -1 && round[l] == k) {   // improved again this round
+                        dist[l] = d;
+                        arc[l] = a;
+                    } else {
+                        record(w, k, d, a);
+                    }
+                }
+            }
+            lo = hi;
+            hi = n;
+        }
+    }
+
+    private void record(int v, int k, double d, int a) {
+        if (n == vertex.length) {
+            int cap = 2 * n;
+            vertex = Arrays.copyOf(vertex, cap);
+            round = Arrays.copyOf(round, cap);
+            arc = Arrays.copyOf(arc, cap);
+            prev = Arrays.copyOf(prev, cap);
+            dist = Arrays.copyOf(dist, cap);
+        }
+        vertex[n] = v;
+        round[n] = k;
+        dist[n] = d;
+        arc[n] = a;
+        prev[n] = last[v];
+        last[v] = n++;
+    }
+
+    // the record of v's shortest path with at most k hops, -1 if there is none
+    private int find(int v, int k) {
+        if (k > hops) throw new IllegalArgumentException("Hop limit " + k + " is above the limit " + hops + " of the run");
+        int r = last[v];
+        while (r != -1 && round[r] > k) r = prev[r];
+        return r;
+    }
+
+    // getters
+    public int source() {
+        return s;
+    }
+
+    public int hops() {
+        return hops;
+    }
+
+    /* weight of the shortest path to v with at most k hops, +Infinity if there is none */
+    public double distTo(int v, int k) {
+        int r = find(v, k);
+        return r == -1 ? Double.POSITIVE_INFINITY : dist[r];
+    }
+
+    public boolean hasPathTo(int v, int k) {
+        return find(v, k) != -1;
+    }
+
+    /* number of routes of the shortest path to v with at most k hops, -1 if there is none */
+    public int hopsTo(int v, int k) {
+        int r = find(v, k);
+        if (r == -1) return -1;
+        int h = 0;
+        for (int x = v; r != -1 && arc[r] != -1; h++) {
+            x = G.other(arc[r], x);
+            r = find(x, round[r] - 1);
+        }
+        return h;
+    }
+
+    /* the shortest path to v with at most k hops, in travel order, null if there is none */
+    public Iterable<Edge> pathTo(int v, int k) {
+        int r = find(v, k);
+        if (r == -1) return null;
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        for (int x = v; arc[r] != -1; ) {
+            path.addFirst(G.edge(arc[r]));
+            x = G.other(arc[r], x);
+            r = find(x, round[r] - 1);     // the weight the arc was relaxed from
+        }
+        return path;
+    }
+}
@@ -0,0 +1,209 @@
+/*************************************************************************
+ *  Description: breadth-first search for the hops query, direction      *
+ *               optimizing, on bitsets                                  *
+ *                                                                       *
+ *  The visited set and the frontier are long[] bitsets, and the levels  *
+ *  are consecutive segments of one int[] queue. A level is expanded     *
+ *  top-down (the frontier scans its arcs for unvisited vertices) while  *
+ *  the frontier is small, and bottom-up (every unvisited vertex scans   *
+ *  its arcs for a frontier vertex, stopping at the first) once the arcs *
+ *  of the frontier outnumber those of the unvisited vertices by ALPHA,  *
+ *  until the frontier shrinks below V / BETA again (Beamer et al.). On  *
+ *  hub-and-spoke networks the frontier takes in most cities after two   *
+ *  hops, which is where bottom-up saves most of the arc scans.          *
+ *                                                                       *
+ *  route(s, t) searches from both ends at once, always growing the side *
+ *  whose frontier has fewer arcs by one level, and stops at the level   *
+ *  where the two sides meet. Each thread reuses its own instance per    *
+ *  graph through forThread.                                             *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.LinkedList;
+
+public class HopsBFS {
+    private static final int ALPHA = 14;   // go bottom-up when frontier arcs > unvisited arcs / ALPHA
+    private static final int BETA = 24;    // go back top-down when the frontier has < V / BETA vertices
+    private static final ThreadLocal<HopsBFS> local = new ThreadLocal<HopsBFS>();
+
+    private final CompactGraph G;
+    private final int V;
+    private final int words;                // longs per bitset
+
+    // one set of labels per side, 0 from the source, 1 from the target of route()
+    private final long[][] seen = new long[2][];     // visited vertices
+    private final long[][] front = new long[2][];    // vertices of the last level
+    private final long[] next;                       // vertices of the level being built
+    private final int[][] queue = new int[2][];      // vertices in the order they were visited
+    private final int[][] edge = new int[2][];       // edge[side][v] = arc between v and its parent, -1 at the root
+    private final int[][] level = new int[2][];      // level[side][v] = hops from the root
+    private final int[] lo = new int[2], hi = new int[2];   // the last level is queue[side][lo .. hi-1]
+    private final long[] frontArcs = new long[2];    // arcs leaving the last level
+    private final long[] unseenArcs = new long[2];   // arcs leaving unvisited vertices
+    private final boolean[] bottomUp = new boolean[2];
+    private int bottomUpLevels;             // levels expanded bottom-up by the last search
+
+    public HopsBFS(CompactGraph G) {
+        this.G = G;
+        V = G.V();
+        words = (V + 63) >>> 6;
+        next = new long[words];
+        for (int side = 0; side < 2; side++) {
+            seen[side] = new long[words];
+            front[side] = new long[words];
+            queue[side] = new int[V];
+            edge[side] = new int[V];
+            level[side] = new int[V];
+        }
+    }
+
+    /* return the instance of the calling thread for G */
+    public static HopsBFS forThread(CompactGraph G) {
+        HopsBFS bfs = local.get();
+        if (bfs == null || bfs.G != G) {
+            bfs = new HopsBFS(G);
+            local.set(bfs);
+        }
+        return bfs;
+    }
+
+    /* visit every vertex reachable from s */
+    public void search(int s) {
+        bottomUpLevels = 0;
+        start(0, s);
+        while (lo[0] < hi[0]) step(0);
+    }
+
+    /* a route from s to t with the fewest hops, null if there is none */
+    public Route route(int s, int t) {
+        bottomUpLevels = 0;
+        start(0, s);
+        start(1, t);
+        int meet = s == t ? s : -1, best = s == t ? 0 : Integer.MAX_VALUE;
+        while (meet == -1 && lo[0] < hi[0] && lo[1] < hi[1]) {
+            int side = frontArcs[0] <= frontArcs[1] ? 0 : 1, other = 1 - side;
+            step(side);
+            // the first level that touches the other side holds the shortest routes
+            for (int i = lo[side]; i < hi[side]; i++) {
+                int v = queue[side][i];
+                if (has(seen[other], v) && level[side][v] + level[other][v] < best) {
+                    best = level[side][v] + level[other][v];
+                    meet = v;
+                }
+            }
+        }
+        if (meet == -1) return null;
+
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        for (int v = meet, a; (a = edge[0][v]) != -1; v = G.other(a, v))
+            path.addFirst(G.edge(a));
+        for (int v = meet, a; (a = edge[1][v]) != -1; v = G.other(a, v))
+            path.addLast(G.edge(a));
+        return new Route(best, path);
+    }
+
+    // after search(s)
+    public boolean hasPathTo(int v) {
+        return has(seen[0], v);
+    }
+
+    /* hops from the source of the last search(s) to v, -1 if v cannot be reached */
+    public int hopsTo(int v) {
+        return has(seen[0], v) ? level[0][v] : -1;
+    }
+
+    /* a route from the source of the last search(s) to v, in travel order, null if there is none */
+    public Iterable<Edge> pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        for (int a; (a = edge[0][v]) != -1; v = G.other(a, v))
+            path.addFirst(G.edge(a));
+        return path;
+    }
+
+    /* number of levels the last search expanded bottom-up */
+    public int bottomUpLevels() {
+        return bottomUpLevels;
+    }
+
+    // make s the only vertex of a side
+    private void start(int side, int s) {
+        java.util.Arrays.fill(seen[side], 0);
+        java.util.Arrays.fill(front[side], 0);
+        set(seen[side], s);
+        set(front[side], s);
+        edge[side][s] = -1;
+        level[side][s] = 0;
+        queue[side][0] = s;
+        lo[side] = 0;
+        hi[side] = 1;
+        frontArcs[side] = G.degree(s);
+        unseenArcs[side] = 2L * G.E() - G.degree(s);
+        bottomUp[side] = false;
+    }
+
+    // expand the last level of a side by one hop
+    private void step(int side) {
+        if (bottomUp[side]) bottomUp[side] = hi[side] - lo[side] >= V / BETA;
+        else                bottomUp[side] = frontArcs[side] > unseenArcs[side] / ALPHA;
+
+        long[] seen = this.seen[side], front = this.front[side];
+        int[] queue = this.queue[side], edge = this.edge[side], level = this.level[side];
+        int n = hi[side];
+        long arcs = 0;
+        if (bottomUp[side]) {
+            bottomUpLevels++;
+            int l = level[queue[lo[side]]] + 1;
+            for (int i = 0; i < words; i++) {
+                long unseen = ~seen[i];
+                while (unseen != 0) {
+                    int v = (i << 6) + Long.numberOfTrailingZeros(unseen);
+                    unseen &= unseen - 1;
+                    if (v >= V) break;
+                    for (int a = G.begin(v), end = G.end(v); a < end; a++) {
+                        if (has(front, G.target(a))) {   // a frontier neighbour becomes the parent
+                            edge[v] = a;
+                            level[v] = l;
+                            queue[n++] = v;
+                            next[i] |= 1L << v;
+                            arcs += end - G.begin(v);
+                            break;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < words; i++) seen[i] |= next[i];
+        } else {
+            for (int k = lo[side], end = hi[side]; k < end; k++) {
+                int v = queue[k];
+                for (int a = G.begin(v), e = G.end(v); a < e; a++) {
+                    int w = G.target(a);
+                    if (!has(seen, w)) {
+                        set(seen, w);
+                        set(next, w);
+                        edge[w] = a;
+                        level[w] = level[v] + 1;
+                        queue[n++] = w;
+                        arcs += G.degree(w);
+                    }
+                }
+            }
+        }
+
+        // the new level becomes the frontier
+        System.arraycopy(next, 0, front, 0, words);
+        java.util.Arrays.fill(next, 0);
+        lo[side] = hi[side];
+        hi[side] = n;
+        frontArcs[side] = arcs;
+        unseenArcs[side] -= arcs;
+    }
+
+    private static boolean has(long[] bits, int v) {
+        return (bits[v >>> 6] & (1L << v)) != 0;
+    }
+
+    private static void set(long[] bits, int v) {
+        bits[v >>> 6] |= 1L << v;
+    }
+}
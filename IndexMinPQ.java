@@ -1,7 +1,7 @@
 
 import java.util.NoSuchElementException;
 
-public class IndexMinPQ{
+public class IndexMinPQ implements IndexPQ{
     private int max;                           // the maximum number of items
     private int n;                             // current number of items on PQ
     private int[] pq;                          // min heap of vertices
@@ -42,6 +42,12 @@ public class IndexMinPQ{
         return min;
     }
 
+    // return the smallest key without removing it
+    public double minKey() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        return keys[pq[1]];
+    }
+
     // decrease the key
     public void decreaseKey(int i, double key) {
         if (i < 0 || i >= max) throw new IndexOutOfBoundsException();
@@ -52,6 +58,16 @@ public class IndexMinPQ{
         swim(qp[i]);
     }
 
+    // remove all items, in time proportional to the number of items left
+    public void clear() {
+        for (int k = 1; k <= n; k++) {
+            qp[pq[k]] = -1;
+            keys[pq[k]] = 0;
+            pq[k] = -1;
+        }
+        n = 0;
+    }
+
     // helper functions
     public boolean isEmpty() {
         return n == 0;
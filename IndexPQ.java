@@ -0,0 +1,51 @@
+/*************************************************************************
+ *  Description: an indexed min priority queue of vertices 0..max-1,     *
+ *               the interface ShortestPath and PrimMST run on           *
+ *                                                                       *
+ *  Implementations:                                                     *
+ *    BINARY    IndexMinPQ, binary heap with a position index            *
+ *    FOUR_ARY  FourAryPQ, 4-ary heap with the keys in heap order, so a  *
+ *              sift step compares keys that share a cache line          *
+ *    LAZY      LazyPQ, binary heap of (key, vertex) entries without a   *
+ *              position index, decreaseKey pushes a new entry and the   *
+ *              outdated one is skipped when it comes to the top         *
+ *    radix(s)  RadixPQ, radix heap for keys that are whole multiples    *
+ *              of 1/s (e.g. s = 100 for prices in cents), for           *
+ *              monotone uses like Dijkstra's algorithm only             *
+ *                                                                       *
+ *************************************************************************/
+
+public interface IndexPQ {
+    /* creates a queue for vertices 0..max-1, keep one instance per kind of queue,
+       so that a SearchWorkspace can reuse the queue it made */
+    public interface Factory {
+        public IndexPQ create(int max);
+    }
+
+    public static final Factory BINARY = IndexMinPQ::new;
+    public static final Factory FOUR_ARY = FourAryPQ::new;
+    public static final Factory LAZY = LazyPQ::new;
+
+    /* a radix heap factory for keys that are whole multiples of 1/scale */
+    public static Factory radix(final double scale) {
+        return max -> new RadixPQ(max, scale);
+    }
+
+    public void insert(int i, double key);
+
+    // delete the min item and return it
+    public int delMin();
+
+    // return the smallest key without removing it
+    public double minKey();
+
+    // decrease the key of an item in the queue
+    public void decreaseKey(int i, double key);
+
+    // remove all items, in time proportional to the number of items left
+    public void clear();
+
+    public boolean isEmpty();
+
+    public boolean contains(int i);
+}
@@ -0,0 +1,65 @@
+/*************************************************************************
+ *  Description: a growable list of primitive ints, used where an        *
+ *               ArrayList<Integer> would box every element              *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class IntList {
+    private int[] a;    // elements
+    private int n;      // number of elements
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int capacity) {
+        a = new int[Math.max(capacity, 1)];
+        n = 0;
+    }
+
+    public void add(int x) {
+        if (n == a.length) a = Arrays.copyOf(a, 2*n);
+        a[n++] = x;
+    }
+
+    public int get(int i) {
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException("index " + i + " is not between 0 and " + (n-1));
+        return a[i];
+    }
+
+    public void set(int i, int x) {
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException("index " + i + " is not between 0 and " + (n-1));
+        a[i] = x;
+    }
+
+    // remove and return the last element
+    public int pop() {
+        if (n == 0) throw new IndexOutOfBoundsException("list is empty");
+        return a[--n];
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    public void clear() {
+        n = 0;
+    }
+
+    // keep only the first size elements
+    public void truncate(int size) {
+        if (size < 0 || size > n) throw new IndexOutOfBoundsException("size " + size + " is not between 0 and " + n);
+        n = size;
+    }
+
+    // copy of the elements
+    public int[] toArray() {
+        return Arrays.copyOf(a, n);
+    }
+}
@@ -0,0 +1,162 @@
+/*************************************************************************
+ *  Description: the k shortest loopless paths from s to t, by distance  *
+ *               (option 0) or price (option 1), Yen's algorithm         *
+ *                                                                       *
+ *  One Dijkstra search from t gives the shortest path and the exact     *
+ *  weight from every vertex to t. Each next path deviates from the      *
+ *  previous one at some spur vertex: the root up to the spur is kept,   *
+ *  the root's other vertices and the arcs out of the spur taken by      *
+ *  earlier paths with the same root are masked, and a spur search runs  *
+ *  from the spur to t. Masking only takes routes away, so the weights   *
+ *  from the tree at t are lower bounds that make every spur search an   *
+ *  A* search, which stops at the first vertex whose tree path to t is   *
+ *  not masked and follows the tree from there. Only the spurs from the  *
+ *  previous path's own deviation onwards are searched (Lawler), and     *
+ *  they run in parallel, each thread with its own workspace and mask.   *
+ *  The routes are never changed.                                        *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+public class KShortestPaths {
+    private final CompactGraph G;
+    private final int option;
+    private final ForkJoinPool pool;   // runs the spur searches, null for the calling thread
+
+    /* a path as its vertices and the arcs between them, in travel order */
+    private static class Path implements Comparable<Path> {
+        private final int[] vertices;
+        private final int[] arcs;
+        private final double weight;
+        private final int dev;         // index of the vertex where it left its parent path
+
+        Path(int[] vertices, int[] arcs, double weight, int dev) {
+            this.vertices = vertices;
+            this.arcs = arcs;
+            this.weight = weight;
+            this.dev = dev;
+        }
+
+        public int compareTo(Path p) {
+            if (weight != p.weight) return Double.compare(weight, p.weight);
+            return Integer.compare(arcs.length, p.arcs.length);
+        }
+
+        // true if its first n vertices are those of p
+        boolean startsLike(Path p, int n) {
+            if (vertices.length < n || p.vertices.length < n) return false;
+            for (int i = 0; i < n; i++)
+                if (vertices[i] != p.vertices[i]) return false;
+            return true;
+        }
+    }
+
+    public KShortestPaths(CompactGraph G, int option, ForkJoinPool pool) {
+        if (option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        this.G = G;
+        this.option = option;
+        this.pool = pool;
+    }
+
+    /* up to k loopless routes from s to t, shortest first */
+    public ArrayList<Route> paths(int s, int t, int k) {
+        ArrayList<Route> routes = new ArrayList<Route>();
+        if (k <= 0) return routes;
+
+        // the tree of shortest paths into t, and the weight from every vertex to t
+        final int V = G.V();
+        ShortestPath tree = new ShortestPath(G, option, new SearchWorkspace(V));
+        tree.dijkstraSP(t);
+        if (!tree.hasPathTo(s)) return routes;
+        final double[] h = new double[V];
+        for (int v = 0; v < V; v++) h[v] = tree.distTo(v);
+
+        final int[] next = new int[V];            // next[v] = arc from v towards t on the tree
+        for (int v = 0; v < V; v++) next[v] = reverse(v, tree.edgeTo(v));
+        IntList vs = new IntList(), as = new IntList();
+        vs.add(s);
+        for (int v = s; v != t; ) {
+            as.add(next[v]);
+            v = G.target(next[v]);
+            vs.add(v);
+        }
+        final ArrayList<Path> found = new ArrayList<Path>();
+        found.add(new Path(vs.toArray(), as.toArray(), h[s], 0));
+
+        PriorityQueue<Path> candidates = new PriorityQueue<Path>();
+        HashSet<String> seen = new HashSet<String>();   // vertex sequences of found and candidate paths
+        seen.add(Arrays.toString(found.get(0).vertices));
+
+        while (found.size() < k) {
+            final Path prev = found.get(found.size() - 1);
+            final int from = prev.dev, spurs = prev.vertices.length - 1 - from;
+            final Path[] spur = new Path[spurs];
+            ParallelRange.run(pool, 0, spurs, 1, (lo, hi) -> {
+                for (int i = lo; i < hi; i++)
+                    spur[i] = spur(prev, from + i, found, h, next);
+            });
+            for (Path p : spur)
+                if (p != null && seen.add(Arrays.toString(p.vertices))) candidates.add(p);
+            if (candidates.isEmpty()) break;
+            found.add(candidates.poll());
+        }
+
+        for (Path p : found) {
+            LinkedList<Edge> edges = new LinkedList<Edge>();
+            for (int a : p.arcs) edges.add(G.edge(a));
+            routes.add(new Route(p.weight, edges));
+        }
+        return routes;
+    }
+
+    // the shortest path that follows prev up to its vertex i and then leaves it, null if none
+    private Path spur(Path prev, int i, ArrayList<Path> found, double[] h, int[] next) {
+        int V = G.V();
+        RouteMask mask = RouteMask.forThread(V, 2 * G.E());
+        int sv = prev.vertices[i];
+        for (int j = 0; j < i; j++)
+            mask.blockVertex(prev.vertices[j]);   // the root, so the path stays loopless
+        for (Path p : found)                      // the arcs out of the spur of paths with this root
+            if (p.startsLike(prev, i + 1)) mask.blockArc(p.arcs[i]);
+
+        ShortestPath sp = new ShortestPath(G, option, SearchWorkspace.forThread(V)).useMask(mask);
+        int t = prev.vertices[prev.vertices.length - 1];
+        sp.astarSP(sv, t, h, next);
+        if (!sp.hasPathTo(t)) return null;
+
+        IntList tail = new IntList();             // arcs from t back to the spur
+        for (int x = t, a; (a = sp.edgeTo(x)) != -1; x = G.source(a))
+            tail.add(a);
+        int n = tail.size();
+        int[] vertices = new int[i + 1 + n], arcs = new int[i + n];
+        System.arraycopy(prev.vertices, 0, vertices, 0, i + 1);
+        System.arraycopy(prev.arcs, 0, arcs, 0, i);
+        double weight = 0;
+        for (int j = 0; j < i; j++) weight += G.weight(arcs[j], option);
+        for (int j = 0; j < n; j++) {
+            arcs[i + j] = tail.get(n - 1 - j);
+            vertices[i + 1 + j] = G.target(arcs[i + j]);
+        }
+        return new Path(vertices, arcs, weight + sp.distTo(t), i);
+    }
+
+    // the arc of the same route as a, which leads into v, in the other direction; -1 if a is -1
+    private int reverse(int v, int a) {
+        if (a == -1) return -1;
+        int u = G.other(a, v);
+        Edge e = G.edge(a);
+        int best = -1;
+        for (int b = G.begin(v), end = G.end(v); b < end; b++) {
+            if (G.target(b) != u) continue;
+            if (G.edge(b) == e) return b;
+            if (best == -1 || G.weight(b, option) < G.weight(best, option)) best = b;
+        }
+        return best;
+    }
+}
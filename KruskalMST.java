@@ -0,0 +1,87 @@
+/*************************************************************************
+ *  Description: minimum spanning forest by Kruskal's algorithm          *
+ *                                                                       *
+ *  Every route is listed once in a primitive array of arc ids with a    *
+ *  parallel array of weights, the two are sorted together, and the      *
+ *  routes are added in that order unless a union-find shows that their  *
+ *  ends are joined already. The scan stops once V - 1 routes are in.    *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.LinkedList;
+
+public class KruskalMST implements MST {
+    private static final int INSERTION = 16;   // ranges this short are insertion sorted
+
+    private final CompactGraph G;
+    private final int option;
+    private final IntList mst = new IntList();   // arcs of the forest
+    private double weight;
+
+    /* the MST of a snapshot by distance (option 0) or price (option 1) */
+    public KruskalMST(CompactGraph G, int option) {
+        this.G = G;
+        this.option = option;
+        int V = G.V();
+
+        // one arc per route, the one leaving the lower vertex
+        int m = 0;
+        int[] arcs = new int[G.E()];
+        double[] w = new double[G.E()];
+        for (int v = 0; v < V; v++)
+            for (int a = G.begin(v), end = G.end(v); a < end; a++)
+                if (G.target(a) > v) {
+                    arcs[m] = a;
+                    w[m++] = G.weight(a, option);
+                }
+        sort(w, arcs, 0, m - 1);
+
+        UnionFind uf = new UnionFind(V);
+        for (int i = 0; i < m && mst.size() < V - 1; i++) {
+            int a = arcs[i];
+            if (uf.union(G.source(a), G.target(a))) {
+                mst.add(a);
+                weight += w[i];
+            }
+        }
+    }
+
+    public Iterable<Edge> edges() {
+        LinkedList<Edge> edges = new LinkedList<Edge>();
+        for (int i = 0; i < mst.size(); i++)
+            edges.add(G.edge(mst.get(i)));
+        return edges;
+    }
+
+    public double weight() {
+        return weight;
+    }
+
+    // sort w[lo..hi] and carry the arcs along, quicksort with a median of three pivot
+    private static void sort(double[] w, int[] arcs, int lo, int hi) {
+        while (hi - lo >= INSERTION) {
+            int mid = (lo + hi) >>> 1;
+            if (w[mid] < w[lo]) swap(w, arcs, mid, lo);
+            if (w[hi] < w[lo])  swap(w, arcs, hi, lo);
+            if (w[hi] < w[mid]) swap(w, arcs, hi, mid);
+            double pivot = w[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (w[i] < pivot) i++;
+                while (w[j] > pivot) j--;
+                if (i <= j) swap(w, arcs, i++, j--);
+            }
+            // recurse into the smaller half, loop on the larger one
+            if (j - lo < hi - i) { sort(w, arcs, lo, j); lo = i; }
+            else                 { sort(w, arcs, i, hi); hi = j; }
+        }
+        for (int i = lo + 1; i <= hi; i++)
+            for (int j = i; j > lo && w[j] < w[j-1]; j--)
+                swap(w, arcs, j, j-1);
+    }
+
+    private static void swap(double[] w, int[] arcs, int i, int j) {
+        double t = w[i]; w[i] = w[j]; w[j] = t;
+        int a = arcs[i]; arcs[i] = arcs[j]; arcs[j] = a;
+    }
+}
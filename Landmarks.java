@@ -0,0 +1,157 @@
+/*************************************************************************
+ *  Description: landmark tables for goal-directed (ALT) search          *
+ *                                                                       *
+ *  For a few landmark airports l, the exact distance and price from l   *
+ *  to every vertex are stored. By the triangle inequality               *
+ *      dist(v,t) >= |dist(l,t) - dist(l,v)|                             *
+ *  so the largest such difference over all landmarks is an admissible   *
+ *  and consistent lower bound that ShortestPath.astarSP uses to steer   *
+ *  the search towards t. No coordinates are needed.                     *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.*;
+
+public class Landmarks {
+    private static final int MAGIC = 0x4C4D4B31;  // "LMK1"
+
+    private final int V;                // number of vertices
+    private final int k;                // number of landmarks
+    private final int[] landmarks;      // landmark vertices
+    private final double[][] dist;      // dist[option][v*k+i] = weight from landmark i to v
+    private final long fingerprint;     // fingerprint of the graph the tables were built for
+
+    /* pick k landmarks and compute their tables for distance and price */
+    public Landmarks(RouteGraph G, int k){
+        CompactGraph C = G.snapshot();
+        this.V = C.V();
+        this.k = Math.min(k, V);
+        this.landmarks = new int[this.k];
+        this.dist = new double[2][V*this.k];
+        this.fingerprint = fingerprint(C);
+
+        // farthest selection: each new landmark is the vertex farthest (by distance) from all chosen ones,
+        // unreachable vertices come first so that every component gets a landmark
+        double[] nearest = new double[V];
+        boolean[] chosen = new boolean[V];
+        for(int v = 0; v < V; v++) nearest[v] = Double.POSITIVE_INFINITY;
+        int next = maxDegree(C);
+        for(int i = 0; i < this.k; i++){
+            landmarks[i] = next;
+            chosen[next] = true;
+            for(int option = 0; option < 2; option++){
+                ShortestPath sp = new ShortestPath(G, option);
+                sp.dijkstraSP(next);
+                for(int v = 0; v < V; v++)
+                    dist[option][v*this.k+i] = sp.distTo(v);
+            }
+            next = -1;
+            for(int v = 0; v < V; v++){
+                nearest[v] = Math.min(nearest[v], dist[0][v*this.k+i]);
+                if(!chosen[v] && (next == -1 || nearest[v] > nearest[next])) next = v;
+            }
+        }
+    }
+
+    private Landmarks(int V, int k, int[] landmarks, double[][] dist, long fingerprint){
+        this.V = V;
+        this.k = k;
+        this.landmarks = landmarks;
+        this.dist = dist;
+        this.fingerprint = fingerprint;
+    }
+
+    // the first landmark is the busiest hub, the later ones spread out from it
+    private static int maxDegree(CompactGraph C) {
+        int best = 0;
+        for(int v = 1; v < C.V(); v++)
+            if(C.degree(v) > C.degree(best)) best = v;
+        return best;
+    }
+
+    // getters
+    public int size() {
+        return k;
+    }
+
+    public int landmark(int i) {
+        return landmarks[i];
+    }
+
+    /* copy the table entries of the target t, to be passed to lowerBound */
+    public double[] target(int t, int option) {
+        double[] row = new double[k];
+        System.arraycopy(dist[option], t*k, row, 0, k);
+        return row;
+    }
+
+    /* lower bound on the weight of any path from v to the target whose row is given */
+    public double lowerBound(int v, double[] target, int option) {
+        double[] d = dist[option];
+        double h = 0;
+        for(int i = 0, j = v*k; i < k; i++, j++){
+            double a = target[i], b = d[j];
+            if(a == Double.POSITIVE_INFINITY || b == Double.POSITIVE_INFINITY){
+                if(a != b) return Double.POSITIVE_INFINITY; // v and t are in different components
+                continue;                                    // neither is reachable from this landmark
+            }
+            double diff = a > b ? a - b : b - a;
+            if(diff > h) h = diff;
+        }
+        return h;
+    }
+
+    /* check whether the tables were computed for the routes currently in the graph */
+    public boolean matches(RouteGraph G) {
+        CompactGraph C = G.snapshot();
+        return C.V() == V && fingerprint(C) == fingerprint;
+    }
+
+    // a hash of the topology and weights
+    private static long fingerprint(CompactGraph C) {
+        long h = 1125899906842597L;
+        for(int v = 0; v < C.V(); v++){
+            h = 31*h + C.begin(v);
+            for(int a = C.begin(v), end = C.end(v); a < end; a++){
+                h = 31*h + C.target(a);
+                h = 31*h + Double.doubleToLongBits(C.distance(a));
+                h = 31*h + Double.doubleToLongBits(C.price(a));
+            }
+        }
+        return h;
+    }
+
+    /* store the tables in a binary file */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1<<16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(V);
+            out.writeInt(k);
+            out.writeLong(fingerprint);
+            for(int i = 0; i < k; i++) out.writeInt(landmarks[i]);
+            for(int option = 0; option < 2; option++)
+                for(int j = 0; j < V*k; j++) out.writeDouble(dist[option][j]);
+        }
+    }
+
+    /* read tables of k landmarks stored by save, return null if the file is missing, belongs
+       to other routes or holds another number of landmarks */
+    public static Landmarks load(String filename, RouteGraph G, int k) throws IOException {
+        if(!new File(filename).exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1<<16))) {
+            if(in.readInt() != MAGIC) return null;
+            int V = in.readInt();
+            if(V != G.V()) return null;
+            int n = in.readInt();
+            if(n != Math.min(k, V)) return null;   // the number the constructor would pick
+            long fingerprint = in.readLong();
+            int[] landmarks = new int[n];
+            for(int i = 0; i < n; i++) landmarks[i] = in.readInt();
+            double[][] dist = new double[2][V*n];
+            for(int option = 0; option < 2; option++)
+                for(int j = 0; j < V*n; j++) dist[option][j] = in.readDouble();
+            Landmarks L = new Landmarks(V, n, landmarks, dist, fingerprint);
+            return L.matches(G) ? L : null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*************************************************************************
+ *  Description: min priority queue with lazy deletion                   *
+ *                                                                       *
+ *  A binary heap of (key, item) entries with no index from items to     *
+ *  heap positions. decreaseKey pushes another entry for the item, and   *
+ *  an entry whose key is no longer the item's current key is dropped    *
+ *  when it reaches the top. The heap may hold a few entries per item,   *
+ *  in exchange for sift steps that never write an index.                *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class LazyPQ implements IndexPQ {
+    private final int max;          // the maximum number of items
+    private int size;               // current number of items, not entries
+    private int n;                  // current number of entries
+    private double[] heapKey;       // entries in heap order, the root is at 0
+    private int[] heapItem;
+    private final double[] current; // current[i] = key of item i, NaN if not in the queue
+
+    /* constructor */
+    public LazyPQ(int max){
+        if (max < 0) throw new IllegalArgumentException();
+        this.max = max;
+        heapKey = new double[Math.max(16, max)];
+        heapItem = new int[heapKey.length];
+        current = new double[max];
+        Arrays.fill(current, Double.NaN);
+    }
+
+    public void insert(int i, double key) {
+        if (contains(i)) throw new IllegalArgumentException("index is already in the priority queue");
+        current[i] = key;
+        size++;
+        push(i, key);
+    }
+
+    public int delMin() {
+        if (size == 0) throw new NoSuchElementException("Priority queue underflow");
+        dropStale();
+        int min = heapItem[0];
+        pop();
+        current[min] = Double.NaN;
+        size--;
+        return min;
+    }
+
+    public double minKey() {
+        if (size == 0) throw new NoSuchElementException("Priority queue underflow");
+        dropStale();
+        return heapKey[0];
+    }
+
+    // a key that is not smaller than the current one is ignored
+    public void decreaseKey(int i, double key) {
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        if (key < current[i]) {
+            current[i] = key;
+            push(i, key);
+        }
+    }
+
+    public void clear() {
+        for (int k = 0; k < n; k++)
+            current[heapItem[k]] = Double.NaN;
+        n = 0;
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int i) {
+        if (i < 0 || i >= max) throw new IndexOutOfBoundsException();
+        return current[i] == current[i];   // false for NaN
+    }
+
+    // pop entries until the top one is the current entry of its item
+    private void dropStale() {
+        while (heapKey[0] != current[heapItem[0]]) pop();
+    }
+
+    private void push(int i, double key) {
+        if (n == heapKey.length) {
+            heapKey = Arrays.copyOf(heapKey, 2*n);
+            heapItem = Arrays.copyOf(heapItem, 2*n);
+        }
+        int p = n++;
+        while (p > 0) {
+            int parent = (p - 1) >> 1;
+            if (heapKey[parent] <= key) break;
+            heapKey[p] = heapKey[parent];
+            heapItem[p] = heapItem[parent];
+            p = parent;
+        }
+        heapKey[p] = key;
+        heapItem[p] = i;
+    }
+
+    private void pop() {
+        double key = heapKey[--n];
+        int i = heapItem[n];
+        int p = 0;
+        while (true) {
+            int c = 2*p + 1;
+            if (c >= n) break;
+            if (c + 1 < n && heapKey[c+1] < heapKey[c]) c++;
+            if (key <= heapKey[c]) break;
+            heapKey[p] = heapKey[c];
+            heapItem[p] = heapItem[c];
+            p = c;
+        }
+        heapKey[p] = key;
+        heapItem[p] = i;
+    }
+}
@@ -0,0 +1,19 @@
+/*************************************************************************
+ *  Description: a minimum spanning forest of the routes, by distance    *
+ *               (option 0) or price (option 1)                          *
+ *                                                                       *
+ *  PrimMST     grows one tree at a time from a priority queue           *
+ *  KruskalMST  adds the routes in order of weight unless they close a   *
+ *              cycle, checked with a union-find                         *
+ *  BoruvkaMST  adds the cheapest route out of every component in each   *
+ *              round, the components searched in parallel               *
+ *                                                                       *
+ *************************************************************************/
+
+public interface MST {
+    // the routes of the forest
+    public Iterable<Edge> edges();
+
+    // total weight of the routes, for the option the forest was built for
+    public double weight();
+}
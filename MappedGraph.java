@@ -0,0 +1,98 @@
+/*************************************************************************
+ *  Description: a CompactGraph read straight out of a memory-mapped     *
+ *               binary route file (see RouteFile for the layout)        *
+ *                                                                       *
+ *  Nothing but the city names is copied onto the heap, so opening a     *
+ *  file costs the same no matter how many routes it holds, and the OS   *
+ *  only pages in the parts of the arc arrays a query actually touches.  *
+ *                                                                       *
+ *************************************************************************/
+
+import java.nio.IntBuffer;
+import java.nio.DoubleBuffer;
+
+public class MappedGraph implements CompactGraph {
+    private final int V;              // number of vertices
+    private final int E;              // number of (undirected) edges
+    private final IntBuffer offsets;  // arcs of v are offsets[v] .. offsets[v+1]-1
+    private final IntBuffer targets;  // targets[a] = head vertex of arc a
+    private final DoubleBuffer distance; // distance[a] = distance weight of arc a
+    private final DoubleBuffer price; // price[a] = price weight of arc a
+    private final String[] cities;    // city names from the string table
+
+    /* constructor, called by RouteFile.map once the sections are mapped */
+    MappedGraph(int V, int E, IntBuffer offsets, IntBuffer targets,
+                DoubleBuffer distance, DoubleBuffer price, String[] cities){
+        this.V = V;
+        this.E = E;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.distance = distance;
+        this.price = price;
+        this.cities = cities;
+    }
+
+    // getters
+    public int V() {
+        return V;
+    }
+
+    public int E() {
+        return E;
+    }
+
+    public String[] cities() {
+        return cities;
+    }
+
+    public int begin(int v) {
+        return offsets.get(v);
+    }
+
+    public int end(int v) {
+        return offsets.get(v+1);
+    }
+
+    public int degree(int v) {
+        return offsets.get(v+1) - offsets.get(v);
+    }
+
+    public int target(int a) {
+        return targets.get(a);
+    }
+
+    public double distance(int a) {
+        return distance.get(a);
+    }
+
+    public double price(int a) {
+        return price.get(a);
+    }
+
+    public double weight(int a, int option) {
+        if(option == 0) return distance.get(a);
+        if(option == 1) return price.get(a);
+        return 0;
+    }
+
+    // routes are not stored as objects in the file, so build one on demand
+    public Edge edge(int a) {
+        return new Edge(source(a), targets.get(a), distance.get(a), price.get(a));
+    }
+
+    // tail vertex of arc a, found by a binary search over the offsets
+    public int source(int a) {
+        int lo = 0, hi = V-1;
+        while(lo < hi){
+            int mid = (lo+hi+1) >>> 1;
+            if(offsets.get(mid) <= a) lo = mid;
+            else                      hi = mid-1;
+        }
+        return lo;
+    }
+
+    public int other(int a, int v) {
+        int w = targets.get(a);
+        return w != v ? w : source(a);
+    }
+}
@@ -0,0 +1,220 @@
+/*************************************************************************
+ *  Description: multilevel overlay for shortest path queries by         *
+ *               distance (option 0) or price (option 1), customizable   *
+ *               route planning                                          *
+ *                                                                       *
+ *  The cells come from an OverlayPartition, built once from the         *
+ *  topology. Customization gives every cell the weights between all     *
+ *  pairs of its boundary cities, through the cell only: the finest      *
+ *  cells by Dijkstra on their routes, each coarser cell by Dijkstra on  *
+ *  the overlay of the level below, restricted to the cell. The cells of *
+ *  a level are independent, so they run in parallel, and a change of    *
+ *  fares only needs a new customization, not a new partition.           *
+ *                                                                       *
+ *  Query: bidirectional Dijkstra between s and t, where a city outside  *
+ *  the finest cells of s and t takes the clique of the coarsest cell    *
+ *  that holds neither of them, plus its routes that leave that cell;    *
+ *  the cities in the cells of s and t use their routes. A clique hop of *
+ *  the result is unpacked by the same search within its cell, one level *
+ *  down at a time.                                                      *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+public class MultilevelOverlay {
+    private static final int FWD = 0;   // workspace side of the forward search
+    private static final int BWD = 1;   // workspace side of the backward search
+
+    private final OverlayPartition P;
+    private final CompactGraph G;   // the snapshot whose weights were customized
+    private final int option;
+    private final int V;
+    private final int L;            // number of levels of cells
+    private final int[][] offset;   // clique of level-l cell c starts at clique[l][offset[l][c]]
+    private final double[][] clique;// b x b weights between the b boundary cities of a cell, row by row
+
+    /* customize the cells of P for the weights of G, on pool (null for the calling thread) */
+    public MultilevelOverlay(OverlayPartition P, CompactGraph G, int option, ForkJoinPool pool) {
+        if (option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        if (P.V() != G.V()) throw new IllegalArgumentException("Partition has " + P.V() + " cities, graph " + G.V());
+        this.P = P;
+        this.G = G;
+        this.option = option;
+        V = G.V();
+        L = P.levels();
+        offset = new int[L][];
+        clique = new double[L][];
+        for (int l = 0; l < L; l++) {
+            int cells = P.cells(l), n = 0;
+            offset[l] = new int[cells];
+            for (int c = 0; c < cells; c++) {
+                offset[l][c] = n;
+                n += P.boundary(l, c) * P.boundary(l, c);
+            }
+            clique[l] = new double[n];
+
+            // each cell searches from each of its boundary cities, finest level first; routes are the
+            // same both ways, so the search from the i-th only needs to settle the ones after it
+            final int level = l;
+            ParallelRange.run(pool, 0, cells, 1, (lo, hi) -> {
+                SearchWorkspace ws = SearchWorkspace.forThread(V);
+                for (int c = lo; c < hi; c++) {
+                    int b = P.boundary(level, c), o = offset[level][c];
+                    for (int i = 0; i < b; i++) {
+                        search(level, c, P.boundary(level, c, i), -1, i + 1, ws);
+                        clique[level][o + i*b + i] = 0;
+                        for (int j = i + 1; j < b; j++)
+                            clique[level][o + i*b + j] = clique[level][o + j*b + i] = ws.dist(FWD, P.boundary(level, c, j));
+                    }
+                }
+            });
+        }
+    }
+
+    public int option() {
+        return option;
+    }
+
+    public OverlayPartition partition() {
+        return P;
+    }
+
+    /* a shortest path from s to t, null if there is none */
+    public Route route(int s, int t) {
+        SearchWorkspace ws = SearchWorkspace.forThread(V);
+        ws.begin();
+        IndexPQ fq = ws.pq(FWD), bq = ws.pq(BWD);
+        ws.label(FWD, s, 0, -1);
+        fq.insert(s, 0);
+        ws.label(BWD, t, 0, -1);
+        bq.insert(t, 0);
+        IntList touched = new IntList();            // the cities the last scan labeled
+        double best = s == t ? 0 : Double.POSITIVE_INFINITY;
+        int meet = s == t ? s : -1;
+
+        // the routes and cliques are the same both ways, so t searches back exactly as s searches forth
+        while (!fq.isEmpty() && !bq.isEmpty() && fq.minKey() + bq.minKey() < best) {
+            int side = fq.minKey() <= bq.minKey() ? FWD : BWD;
+            int v = (side == FWD ? fq : bq).delMin();
+            touched.clear();
+            scan(v, level(v, s, t) - 1, -1, 0, side, ws, side == FWD ? fq : bq, touched);
+            // a better path through a city both searches labeled
+            for (int i = 0; i < touched.size(); i++) {
+                int w = touched.get(i);
+                double total = ws.dist(FWD, w) + ws.dist(BWD, w);
+                if (total < best) {
+                    best = total;
+                    meet = w;
+                }
+            }
+        }
+        if (meet == -1) return null;
+
+        // the hops of the overlay path, copied out before the unpacking searches reuse the labels
+        IntList from = new IntList(), via = new IntList(), to = new IntList();
+        collect(meet, FWD, ws, from, via, to);
+        int n = from.size();
+        for (int i = 0, j = n - 1; i < j; i++, j--) {      // into travel order
+            swap(from, i, j);
+            swap(via, i, j);
+            swap(to, i, j);
+        }
+        collect(meet, BWD, ws, to, via, from);             // from meet to t the hops run backwards
+        IntList arcs = new IntList();
+        for (int i = 0; i < from.size(); i++) {
+            int u = from.get(i);
+            if (via.get(i) >= 0) arcs.add(via.get(i));
+            else {
+                int l = level(i < n ? u : to.get(i), s, t) - 1;   // the end the search scanned the clique from
+                unpack(l, P.cell(l, u), u, to.get(i), ws, arcs);
+            }
+        }
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        for (int i = 0; i < arcs.size(); i++) path.add(G.edge(arcs.get(i)));
+        return new Route(best, path);
+    }
+
+    private static void swap(IntList a, int i, int j) {
+        int x = a.get(i);
+        a.set(i, a.get(j));
+        a.set(j, x);
+    }
+
+    // 0 if v lies in the finest cell of s or t, otherwise 1 + the coarsest level where its cell holds neither
+    private int level(int v, int s, int t) {
+        for (int l = L - 1; l >= 0; l--) {
+            int c = P.cell(l, v);
+            if (c != P.cell(l, s) && c != P.cell(l, t)) return l + 1;
+        }
+        return 0;
+    }
+
+    // Dijkstra from u within level-l cell c, over the cells of level l-1 (the routes if l is 0),
+    // stopping once t is settled, or with t = -1 once the boundary cities of c from the k-th on are
+    private void search(int l, int c, int u, int t, int k, SearchWorkspace ws) {
+        ws.begin();
+        IndexPQ pq = ws.pq(FWD);
+        ws.label(FWD, u, 0, -1);
+        pq.insert(u, 0);
+        int left = t == -1 ? P.boundary(l, c) - k : 1;
+        if (left == 0) return;
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            if ((v == t || (t == -1 && P.index(l, v) >= k && P.cell(l, v) == c)) && --left == 0) break;
+            scan(v, l - 1, l, c, FWD, ws, pq, null);
+        }
+    }
+
+    // relax the clique of v's level-l cell and the routes of v leaving it (all its routes if l is -1),
+    // skipping cities outside the level-top cell c (top = -1 for none); a clique hop is labeled -2-v,
+    // and the cities whose label improved are added to touched unless it is null
+    private void scan(int v, int l, int top, int c, int side, SearchWorkspace ws, IndexPQ pq, IntList touched) {
+        double dv = ws.dist(side, v);
+        if (l >= 0) {
+            int cv = P.cell(l, v), b = P.boundary(l, cv), i = P.index(l, v);
+            int row = offset[l][cv] + i*b;
+            for (int j = 0; j < b; j++)
+                if (j != i) relax(P.boundary(l, cv, j), dv + clique[l][row + j], -2 - v, side, ws, pq, touched);
+        }
+        for (int a = G.begin(v), end = G.end(v); a < end; a++) {
+            int w = G.target(a);
+            if (l >= 0 && P.cell(l, w) == P.cell(l, v)) continue;   // inside the cell, the clique covers it
+            if (top >= 0 && P.cell(top, w) != c) continue;
+            relax(w, dv + G.weight(a, option), a, side, ws, pq, touched);
+        }
+    }
+
+    private static void relax(int w, double d, int via, int side, SearchWorkspace ws, IndexPQ pq, IntList touched) {
+        if (ws.dist(side, w) > d) {
+            ws.label(side, w, d, via);
+            if (pq.contains(w)) pq.decreaseKey(w, d);
+            else                pq.insert(w, d);
+            if (touched != null) touched.add(w);
+        }
+    }
+
+    // the hops of the path labeled on side to x, from x back to the root: hop i runs from
+    // from[i] to to[i] over arc via[i], or over a clique if via[i] < -1
+    private void collect(int x, int side, SearchWorkspace ws, IntList from, IntList via, IntList to) {
+        for (int e; (e = ws.edge(side, x)) != -1; ) {
+            int u = e >= 0 ? G.other(e, x) : -2 - e;
+            from.add(u);
+            via.add(e);
+            to.add(x);
+            x = u;
+        }
+    }
+
+    // append the arcs of the shortest path from u to x within level-l cell c
+    private void unpack(int l, int c, int u, int x, SearchWorkspace ws, IntList arcs) {
+        search(l, c, u, x, 0, ws);
+        IntList from = new IntList(), via = new IntList(), to = new IntList();
+        collect(x, FWD, ws, from, via, to);
+        for (int i = from.size() - 1; i >= 0; i--) {
+            if (via.get(i) >= 0) arcs.add(via.get(i));
+            else                 unpack(l - 1, P.cell(l - 1, from.get(i)), from.get(i), to.get(i), ws, arcs);
+        }
+    }
+}
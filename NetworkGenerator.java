@@ -0,0 +1,124 @@
+/*************************************************************************
+ *  Description: seeded generator of synthetic airline networks in the   *
+ *               text route format read by RouteGraph.load               *
+ *                                                                       *
+ *  Cities are scattered over a 2800 x 1600 mile map. Routes are added   *
+ *  by preferential attachment: every new city opens routes to cities    *
+ *  picked with probability proportional to the routes they already      *
+ *  have, so a few hubs collect most routes and the degrees follow a     *
+ *  power law, as in a hub-and-spoke network. Distances are the miles    *
+ *  between the cities, prices a fare per mile with some noise, both    *
+ *  whole numbers. The same arguments always give the same file.         *
+ *                                                                       *
+ *  Usage: java NetworkGenerator <cities> <routes per city> <seed> <file> *
+ *         e.g. java NetworkGenerator 100000 10 42 big.txt (1M routes)   *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.Random;
+
+public class NetworkGenerator {
+    private static final double WIDTH = 2800, HEIGHT = 1600;   // map size in miles
+
+    private final int V;              // number of cities
+    private final int m;              // routes opened by each new city
+    private final long seed;
+    private final double[] x, y;      // city positions
+    private int E;                    // number of routes
+    private int[] from, to;           // route endpoints
+
+    /* generate a network of V cities where each new city opens m routes */
+    public NetworkGenerator(int V, int m, long seed){
+        if(V < 2) throw new IllegalArgumentException("At least two cities are needed");
+        if(m < 1) throw new IllegalArgumentException("Each city needs at least one route");
+        this.V = V;
+        this.m = Math.min(m, V-1);
+        this.seed = seed;
+        Random random = new Random(seed);
+        x = new double[V];
+        y = new double[V];
+        for(int v = 0; v < V; v++){
+            x[v] = random.nextDouble()*WIDTH;
+            y[v] = random.nextDouble()*HEIGHT;
+        }
+
+        // ends[] lists the endpoints of every route, so a uniform pick from it is a pick by degree
+        int cap = this.m*V;
+        from = new int[cap];
+        to = new int[cap];
+        int[] ends = new int[2*cap];
+        int n = 0;
+        HashSet<Long> seen = new HashSet<Long>(2*cap);
+        int core = this.m + 1;                        // the first cities are all linked to each other
+        for(int v = 0; v < core; v++)
+            for(int w = v+1; w < core; w++){
+                from[E] = v; to[E] = w; E++;
+                seen.add((long)v*V + w);
+                ends[n++] = v; ends[n++] = w;
+            }
+        for(int v = core; v < V; v++){
+            int added = 0, tries = 0;
+            while(added < this.m && tries++ < 32*this.m){
+                int w = ends[random.nextInt(n)];
+                if(w == v || !seen.add((long)w*V + v)) continue;   // w is an earlier city, one route per pair
+                if(E == from.length){
+                    from = java.util.Arrays.copyOf(from, 2*E);
+                    to = java.util.Arrays.copyOf(to, 2*E);
+                    ends = java.util.Arrays.copyOf(ends, 4*E);
+                }
+                from[E] = w; to[E] = v; E++;
+                ends[n++] = w; ends[n++] = v;
+                added++;
+            }
+        }
+    }
+
+    // getters
+    public int V() {
+        return V;
+    }
+
+    public int E() {
+        return E;
+    }
+
+    /* the name of city v, e.g. C000042 */
+    public String city(int v) {
+        return String.format("C%06d", v);
+    }
+
+    /* whole miles between the endpoints of route e, at least 50 */
+    public double distance(int e) {
+        double dx = x[from[e]] - x[to[e]], dy = y[from[e]] - y[to[e]];
+        return Math.max(50, Math.rint(Math.sqrt(dx*dx + dy*dy)));
+    }
+
+    /* a whole dollar fare: a base price plus a per-mile rate that varies by route */
+    public double price(int e) {
+        Random random = new Random(seed * 31 + e);
+        return Math.rint(40 + distance(e) * (0.08 + 0.08*random.nextDouble()));
+    }
+
+    /* write the network in the text route format */
+    public void write(String filename) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filename), 1<<16))) {
+            out.println(V);
+            for(int v = 0; v < V; v++)
+                out.println(city(v));
+            for(int e = 0; e < E; e++)
+                out.println((from[e]+1)+" "+(to[e]+1)+" "+(long)distance(e)+" "+(long)price(e));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 4){
+            System.out.println("Usage: java NetworkGenerator <cities> <routes per city> <seed> <file>");
+            return;
+        }
+        NetworkGenerator g = new NetworkGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        g.write(args[3]);
+        System.out.println("Wrote "+args[3]+" ("+g.V()+" cities, "+g.E()+" routes)");
+    }
+}
@@ -0,0 +1,214 @@
+/*************************************************************************
+ *  Description: nested cells of the routes for MultilevelOverlay, built *
+ *               from the topology only, so they outlive weight changes  *
+ *                                                                       *
+ *  The cities are bisected recursively: a part is put in breadth-first  *
+ *  order from a city far from the rest (the last city of a BFS from an  *
+ *  arbitrary one) and cut in the middle of that order, which keeps the  *
+ *  halves connected where it can. The last city of that order starts    *
+ *  the next try, and the try that cuts the fewest routes is kept. A     *
+ *  level-l cell is the largest part with at most size(l) cities, so     *
+ *  every cell of level l lies within one cell of level l+1. The         *
+ *  boundary of a cell is its cities with a route leaving the cell.      *
+ *                                                                       *
+ *  Each cell later stores a weight between every pair of its boundary   *
+ *  cities, so a level whose boundaries would take more than CLIQUES     *
+ *  entries per arc is dropped, together with the coarser ones; networks *
+ *  without small cuts (hub-and-spoke ones) keep fewer levels.           *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class OverlayPartition {
+    private static final int TRIES = 3;      // breadth-first orders tried per bisection
+    private static final int CLIQUES = 8;    // clique entries allowed per arc, over all cells of a level
+
+    private final int V;
+    private final int L;                    // number of levels
+    private final int[] size;               // size[l] = largest number of cities in a level-l cell
+    private final int[][] cell;             // cell[l][v] = level-l cell of v
+    private final int[] cells;              // cells[l] = number of level-l cells
+    private final int[][] first;            // boundary of level-l cell c is bound[l][first[l][c] .. first[l][c+1]-1]
+    private final int[][] bound;
+    private final int[][] index;            // index[l][v] = position of v in its cell's boundary, -1 if not on it
+
+    // state used while building only
+    private CompactGraph G;                 // the snapshot it is built from
+    private int[] order;                    // the cities, each part a contiguous range
+    private int[] owner;                    // owner[v] = part v is in, while it is split
+    private int[] scratch;
+    private int[] kept;                     // the best order found so far
+    private int[] limit;                    // the cell sizes asked for
+    private int parts;
+
+    /* partition into cells of up to 16, 128, 1024, ... cities, while a level has at least 16 cells */
+    public OverlayPartition(CompactGraph G) {
+        this(G, sizes(G.V()));
+    }
+
+    /* partition into cells of up to sizes[0] < sizes[1] < ... cities */
+    public OverlayPartition(CompactGraph G, int[] sizes) {
+        for (int l = 0; l < sizes.length; l++)
+            if (sizes[l] < 1 || (l > 0 && sizes[l] <= sizes[l-1]))
+                throw new IllegalArgumentException("Cell sizes must be positive and increasing");
+        this.G = G;
+        V = G.V();
+        int n = sizes.length;
+        int[][] cell = new int[n][V];
+        int[] cells = new int[n];
+        order = new int[V];
+        owner = new int[V];
+        scratch = new int[V];
+        kept = new int[V];
+        limit = sizes;
+        for (int v = 0; v < V; v++) order[v] = v;
+        split(0, V, n - 1, cell, cells);
+        order = owner = scratch = kept = limit = null;
+
+        // boundaries, finest level first, until one gets too large
+        long budget = (long) CLIQUES * 2 * G.E();
+        int[][] first = new int[n][], bound = new int[n][], index = new int[n][];
+        int levels = 0;
+        for (int l = 0; l < n; l++) {
+            int[] c = cell[l];
+            int[] count = new int[cells[l] + 1];
+            index[l] = new int[V];
+            Arrays.fill(index[l], -1);
+            for (int v = 0; v < V; v++)
+                for (int a = G.begin(v), end = G.end(v); a < end; a++)
+                    if (c[G.target(a)] != c[v]) { index[l][v] = count[c[v]]++; break; }
+            long entries = 0;
+            for (int k = 0; k < cells[l]; k++) entries += (long) count[k] * count[k];
+            if (entries > budget) break;
+            first[l] = new int[cells[l] + 1];
+            for (int k = 0; k < cells[l]; k++) first[l][k+1] = first[l][k] + count[k];
+            bound[l] = new int[first[l][cells[l]]];
+            for (int v = 0; v < V; v++)
+                if (index[l][v] != -1) bound[l][first[l][c[v]] + index[l][v]] = v;
+            levels++;
+        }
+        this.G = null;                      // only the cells are kept, they hold for any weights
+        L = levels;
+        this.size = Arrays.copyOf(sizes, L);
+        this.cell = Arrays.copyOf(cell, L);
+        this.cells = Arrays.copyOf(cells, L);
+        this.first = Arrays.copyOf(first, L);
+        this.bound = Arrays.copyOf(bound, L);
+        this.index = Arrays.copyOf(index, L);
+    }
+
+    // 16, 128, 1024, ... while they leave at least 16 cells
+    private static int[] sizes(int V) {
+        int n = 0;
+        for (long s = 16; 16 * s <= V; s *= 8) n++;
+        int[] sizes = new int[n];
+        for (int l = 0, s = 16; l < n; l++, s *= 8) sizes[l] = s;
+        return sizes;
+    }
+
+    // make order[lo .. hi-1] the cells of levels up to top, splitting it while it is too large
+    private void split(int lo, int hi, int top, int[][] cell, int[] cells) {
+        while (top >= 0 && hi - lo <= limit[top]) {
+            int c = cells[top]++;
+            for (int i = lo; i < hi; i++) cell[top][order[i]] = c;
+            top--;
+        }
+        if (top < 0) return;
+        int p = ++parts;
+        for (int i = lo; i < hi; i++) owner[order[i]] = p;
+        int mid = (lo + hi) >>> 1;
+
+        // the last city reached leads the next order; keep the order with the fewest routes cut
+        int from = bfs(lo, hi, order[lo], p);
+        long best = Long.MAX_VALUE;
+        for (int k = 0; k < TRIES; k++) {
+            int next = bfs(lo, hi, from, p);
+            long cut = cut(lo, mid, hi, p);
+            if (cut < best) {
+                best = cut;
+                System.arraycopy(scratch, lo, kept, lo, hi - lo);
+            }
+            from = next;
+        }
+        System.arraycopy(kept, lo, order, lo, hi - lo);
+        split(lo, mid, top, cell, cells);
+        split(mid, hi, top, cell, cells);
+    }
+
+    // write the part of p in breadth-first order from s into scratch[lo .. hi-1], restarting
+    // from the next city of order where the part is not connected; return the last city
+    private int bfs(int lo, int hi, int s, int p) {
+        int head = lo, tail = lo, next = lo;
+        int done = -p;                               // owner of the cities already ordered
+        owner[s] = done;
+        scratch[tail++] = s;
+        while (head < hi) {
+            if (head == tail) {                      // a new component of the part
+                while (owner[order[next]] != p) next++;
+                owner[order[next]] = done;
+                scratch[tail++] = order[next];
+            }
+            int v = scratch[head++];
+            for (int a = G.begin(v), end = G.end(v); a < end; a++) {
+                int w = G.target(a);
+                if (owner[w] == p) {
+                    owner[w] = done;
+                    scratch[tail++] = w;
+                }
+            }
+        }
+        for (int i = lo; i < hi; i++) owner[scratch[i]] = p;   // ready for the next search
+        return scratch[hi - 1];
+    }
+
+    // number of routes between scratch[lo .. mid-1] and scratch[mid .. hi-1], the cities of part p
+    private long cut(int lo, int mid, int hi, int p) {
+        for (int i = lo; i < mid; i++) owner[scratch[i]] = -p;
+        long cut = 0;
+        for (int i = lo; i < mid; i++)
+            for (int v = scratch[i], a = G.begin(v), end = G.end(v); a < end; a++)
+                if (owner[G.target(a)] == p) cut++;
+        for (int i = lo; i < mid; i++) owner[scratch[i]] = p;
+        return cut;
+    }
+
+    // getters
+    public int V() {
+        return V;
+    }
+
+    /* number of levels, 0 if the routes could not be cut into small enough cells */
+    public int levels() {
+        return L;
+    }
+
+    /* largest number of cities in a level-l cell */
+    public int size(int l) {
+        return size[l];
+    }
+
+    public int cells(int l) {
+        return cells[l];
+    }
+
+    /* the level-l cell of v */
+    public int cell(int l, int v) {
+        return cell[l][v];
+    }
+
+    /* number of boundary cities of level-l cell c */
+    public int boundary(int l, int c) {
+        return first[l][c+1] - first[l][c];
+    }
+
+    /* the i-th boundary city of level-l cell c */
+    public int boundary(int l, int c, int i) {
+        return bound[l][first[l][c] + i];
+    }
+
+    /* position of v in the boundary of its level-l cell, -1 if it is not on it */
+    public int index(int l, int v) {
+        return index[l][v];
+    }
+}
@@ -0,0 +1,43 @@
+/*************************************************************************
+ *  Description: run a loop over [lo, hi) on a fork-join pool, splitting *
+ *               the range in halves down to a grain size                *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelRange extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /* the loop body, called with disjoint sub-ranges */
+    public interface Body {
+        public void run(int lo, int hi);
+    }
+
+    private final int lo, hi, grain;
+    private final Body body;
+
+    private ParallelRange(int lo, int hi, int grain, Body body) {
+        this.lo = lo;
+        this.hi = hi;
+        this.grain = Math.max(grain, 1);
+        this.body = body;
+    }
+
+    protected void compute() {
+        if (hi - lo <= grain) {
+            body.run(lo, hi);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new ParallelRange(lo, mid, grain, body), new ParallelRange(mid, hi, grain, body));
+    }
+
+    /* run body over [lo, hi) on pool, or on the calling thread if pool is null */
+    public static void run(ForkJoinPool pool, int lo, int hi, int grain, Body body) {
+        if (lo >= hi) return;
+        if (pool == null) body.run(lo, hi);
+        else              pool.invoke(new ParallelRange(lo, hi, grain, body));
+    }
+}
@@ -0,0 +1,235 @@
+/*************************************************************************
+ *  Description: multi-criteria shortest paths, every trade-off between  *
+ *               miles, price and number of hops in one search           *
+ *                                                                       *
+ *  A route from s to t is Pareto-optimal if no other route is at least  *
+ *  as good in all three criteria and better in one. The search keeps a  *
+ *  bag of labels (distance, price, hops) at every vertex and settles    *
+ *  labels in order of distance + price + hops, which a dominating label *
+ *  always undercuts, so a settled label is never dominated later        *
+ *  (label setting). A new label is dropped if a label in its bag or the *
+ *  front found at t dominates it, and it drops the labels of its bag    *
+ *  that it dominates; a route around a cycle is dominated by the same   *
+ *  route without it, so no cycle survives. Lower bounds to t (one       *
+ *  search per criterion) tighten the test against the front and steer   *
+ *  the queue towards t, which keeps the label count of hubs down.       *
+ *                                                                       *
+ *  Labels are kept in parallel primitive arrays, a route is recovered   *
+ *  by following the predecessor labels.                                 *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+public class ParetoSearch {
+    /* a Pareto-optimal route, its three weights and its edges in travel order */
+    public static class Journey {
+        private final double distance, price;
+        private final int hops;
+        private final Iterable<Edge> edges;
+
+        public Journey(double distance, double price, int hops, Iterable<Edge> edges) {
+            this.distance = distance;
+            this.price = price;
+            this.hops = hops;
+            this.edges = edges;
+        }
+
+        // getters
+        public double distance() {
+            return distance;
+        }
+
+        public double price() {
+            return price;
+        }
+
+        public int hops() {
+            return hops;
+        }
+
+        public Iterable<Edge> edges() {
+            return edges;
+        }
+    }
+
+    private final CompactGraph G;
+    private final int V;
+
+    // labels: weights, vertex, last arc and previous label (-1 at s), dead once dominated
+    private int n;
+    private double[] dist = new double[1024], price = new double[1024], key = new double[1024];
+    private int[] hops = new int[1024], at = new int[1024], arc = new int[1024], pred = new int[1024];
+    private boolean[] dead = new boolean[1024];
+
+    private final IntList[] bag;     // bag[v] = live labels of v, null if v was not reached
+    private final IntList touched = new IntList();   // vertices with a bag, cleared before the next search
+    private int[] heap = new int[1024];   // binary min heap of labels by key
+    private int size;
+
+    // lower bounds of each criterion from every vertex to the current target
+    private final double[] lbDist, lbPrice, lbHops;
+
+    public ParetoSearch(CompactGraph G) {
+        this.G = G;
+        V = G.V();
+        bag = new IntList[V];
+        lbDist = new double[V];
+        lbPrice = new double[V];
+        lbHops = new double[V];
+    }
+
+    /* the Pareto front of routes from s to t, by increasing distance, empty if t cannot be reached */
+    public ArrayList<Journey> front(int s, int t) {
+        reset();
+        bounds(t);
+        ArrayList<Journey> front = new ArrayList<Journey>();
+        if (lbHops[s] == Double.POSITIVE_INFINITY) return front;
+        IntList found = new IntList();   // labels settled at t
+        push(newLabel(s, 0, 0, 0, -1, -1));
+
+        while (size > 0) {
+            int l = pop();
+            if (dead[l]) continue;       // dominated after it was queued
+            int v = at[l];
+            if (v == t) {                // every label still queued is worse somewhere
+                found.add(l);
+                continue;
+            }
+            for (int a = G.begin(v), end = G.end(v); a < end; a++) {
+                int w = G.target(a);
+                double d = dist[l] + G.distance(a), p = price[l] + G.price(a);
+                int h = hops[l] + 1;
+                if (dominatedAt(t, d + lbDist[w], p + lbPrice[w], h + lbHops[w])) continue;
+                if (!merge(w, d, p, h)) continue;
+                push(newLabel(w, d, p, h, a, l));
+            }
+        }
+
+        for (int i = 0; i < found.size(); i++) {
+            int l = found.get(i);
+            front.add(new Journey(dist[l], price[l], hops[l], path(l)));
+        }
+        front.sort((x, y) -> x.distance() != y.distance() ? Double.compare(x.distance(), y.distance())
+                                                           : Double.compare(x.price(), y.price()));
+        return front;
+    }
+
+    /* number of labels created by the last search */
+    public int labels() {
+        return n;
+    }
+
+    // one search per criterion from t, routes are undirected so these bound the way to t
+    private void bounds(int t) {
+        SearchWorkspace ws = SearchWorkspace.forThread(V);
+        ShortestPath sp = new ShortestPath(G, 0, ws);
+        sp.dijkstraSP(t);
+        for (int v = 0; v < V; v++) lbDist[v] = sp.distTo(v);
+        sp = new ShortestPath(G, 1, ws);
+        sp.dijkstraSP(t);
+        for (int v = 0; v < V; v++) lbPrice[v] = sp.distTo(v);
+        sp = new ShortestPath(G, 2, ws);
+        sp.bfsSP(t);
+        for (int v = 0; v < V; v++) lbHops[v] = sp.distTo(v);
+    }
+
+    // true if a label of v is at least as good as (d, p, h) in every criterion
+    private boolean dominatedAt(int v, double d, double p, double h) {
+        IntList b = bag[v];
+        if (b == null) return false;
+        for (int i = 0, m = b.size(); i < m; i++) {
+            int l = b.get(i);
+            if (dist[l] <= d && price[l] <= p && hops[l] <= h) return true;
+        }
+        return false;
+    }
+
+    // make room for (d, p, h) in the bag of w: false if it is dominated, otherwise drop the labels it dominates
+    private boolean merge(int w, double d, double p, int h) {
+        IntList b = bag[w];
+        if (b == null) return true;
+        if (dominatedAt(w, d, p, h)) return false;
+        int m = 0;
+        for (int i = 0, k = b.size(); i < k; i++) {
+            int l = b.get(i);
+            if (d <= dist[l] && p <= price[l] && h <= hops[l]) dead[l] = true;
+            else b.set(m++, l);
+        }
+        b.truncate(m);
+        return true;
+    }
+
+    private int newLabel(int v, double d, double p, int h, int a, int prev) {
+        if (n == dist.length) {
+            int cap = 2 * n;
+            dist = Arrays.copyOf(dist, cap);
+            price = Arrays.copyOf(price, cap);
+            key = Arrays.copyOf(key, cap);
+            hops = Arrays.copyOf(hops, cap);
+            at = Arrays.copyOf(at, cap);
+            arc = Arrays.copyOf(arc, cap);
+            pred = Arrays.copyOf(pred, cap);
+            dead = Arrays.copyOf(dead, cap);
+        }
+        int l = n++;
+        dist[l] = d;
+        price[l] = p;
+        hops[l] = h;
+        at[l] = v;
+        arc[l] = a;
+        pred[l] = prev;
+        dead[l] = false;
+        // the sum of the three bounded weights, strictly smaller for a label that dominates
+        key[l] = d + lbDist[v] + p + lbPrice[v] + h + lbHops[v];
+        if (bag[v] == null) {
+            bag[v] = new IntList(4);
+            touched.add(v);
+        }
+        bag[v].add(l);
+        return l;
+    }
+
+    // the edges of the route of label l, in travel order
+    private Iterable<Edge> path(int l) {
+        LinkedList<Edge> path = new LinkedList<Edge>();
+        for (; arc[l] != -1; l = pred[l])
+            path.addFirst(G.edge(arc[l]));
+        return path;
+    }
+
+    private void reset() {
+        for (int i = 0; i < touched.size(); i++)
+            bag[touched.get(i)] = null;
+        touched.clear();
+        n = 0;
+        size = 0;
+    }
+
+    // binary heap of labels
+    private void push(int l) {
+        if (size == heap.length) heap = Arrays.copyOf(heap, 2 * size);
+        int k = size++;
+        while (k > 0 && key[heap[(k-1) / 2]] > key[l]) {
+            heap[k] = heap[(k-1) / 2];
+            k = (k-1) / 2;
+        }
+        heap[k] = l;
+    }
+
+    private int pop() {
+        int min = heap[0], last = heap[--size];
+        int k = 0;
+        while (2*k + 1 < size) {
+            int j = 2*k + 1;
+            if (j + 1 < size && key[heap[j+1]] < key[heap[j]]) j++;
+            if (key[last] <= key[heap[j]]) break;
+            heap[k] = heap[j];
+            k = j;
+        }
+        heap[k] = last;
+        return min;
+    }
+}
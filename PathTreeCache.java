@@ -0,0 +1,208 @@
+/*************************************************************************
+ *  Description: a bounded cache of shortest path trees                  *
+ *                                                                       *
+ *  A tree holds the distance and last arc of every vertex for one       *
+ *  (source, weight option) pair, so any query from a cached source is   *
+ *  answered by walking the tree. The least recently used tree is        *
+ *  evicted when the cache is full. A full tree costs far more than one  *
+ *  point-to-point query, so it is only built for an origin that missed  *
+ *  before: the first miss of a source is just remembered (among the     *
+ *  last capacity ones), and answered by the caller's usual engine.      *
+ *                                                                       *
+ *  A changed route only drops the trees it can affect:                  *
+ *    - a new route v-w of weight x matters only if it shortens the      *
+ *      path to v or w, i.e. dist(v) + x < dist(w) or the reverse        *
+ *    - a removed route matters only if it is one of the tree's edges,   *
+ *      otherwise every tree path still exists and none got shorter      *
+ *  A tree that survives keeps the snapshot it was computed on, whose    *
+ *  arcs it refers to; the tree edges are still routes of the graph.     *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+public class PathTreeCache {
+    private final int capacity;             // maximum number of trees
+    private final LinkedHashMap<Long, Tree> trees;  // in access order, least recent first
+    private final LinkedHashMap<Long, Boolean> seen; // sources that missed once, least recent first
+    private long hits, misses, evictions, invalidations;
+    private long epoch;                     // number of route changes seen
+
+    /* a shortest path tree from one source */
+    public static class Tree {
+        private final int source;
+        private final int option;           // 0 - distance, 1 - price, 2 - hops
+        private final CompactGraph G;       // the snapshot the arcs refer to
+        private final double[] distTo;      // distTo[v] = weight of the shortest path to v
+        private final int[] edgeTo;         // edgeTo[v] = last arc of that path, -1 if none
+
+        /* copy the tree out of a search that ran from source over all of the graph */
+        Tree(int source, int option, ShortestPath sp){
+            this.source = source;
+            this.option = option;
+            this.G = sp.graph();
+            int V = G.V();
+            distTo = new double[V];
+            edgeTo = new int[V];
+            for (int v = 0; v < V; v++) {
+                distTo[v] = sp.distTo(v);
+                edgeTo[v] = sp.edgeTo(v);
+            }
+        }
+
+        // getters
+        public int source() {
+            return source;
+        }
+
+        public int option() {
+            return option;
+        }
+
+        public double distTo(int v) {
+            return distTo[v];
+        }
+
+        public boolean hasPathTo(int v) {
+            return distTo[v] < Double.POSITIVE_INFINITY;
+        }
+
+        // return the shortest path as a stack of edges
+        public Iterable<Edge> pathTo(int v) {
+            if (!hasPathTo(v)) return null;
+            Deque<Edge> path = new LinkedList<Edge>();
+            for (int a; (a=edgeTo[v]) != -1; v = G.other(a, v))
+                path.push(G.edge(a));
+            return path;
+        }
+
+        // check if a new route v-w of the given weight gives a shorter path to v or w
+        private boolean improvedBy(int v, int w, double weight) {
+            return distTo[v] + weight < distTo[w] || distTo[w] + weight < distTo[v];
+        }
+
+        // check if route v-w is a tree edge
+        private boolean uses(int v, int w) {
+            return (edgeTo[v] != -1 && G.other(edgeTo[v], v) == w)
+                || (edgeTo[w] != -1 && G.other(edgeTo[w], w) == v);
+        }
+    }
+
+    /* constructor */
+    public PathTreeCache(int capacity){
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.trees = new LinkedHashMap<Long, Tree>(16, 0.75f, true);
+        this.seen = new LinkedHashMap<Long, Boolean>(16, 0.75f, true);
+    }
+
+    private static Long key(int source, int option) {
+        return ((long) source << 2) | option;
+    }
+
+    /* return the tree for source and option, or null if it is not cached */
+    public synchronized Tree get(int source, int option) {
+        Tree t = trees.get(key(source, option));
+        if (t == null) misses++;
+        else           hits++;
+        return t;
+    }
+
+    /* true if source and option missed before, so their tree is worth building; otherwise
+       remember them, forgetting the least recent first miss if there are too many */
+    public synchronized boolean repeated(int source, int option) {
+        Long k = key(source, option);
+        if (seen.remove(k) != null) return true;
+        seen.put(k, Boolean.TRUE);
+        if (seen.size() > capacity) {
+            Iterator<Boolean> it = seen.values().iterator();
+            it.next();
+            it.remove();
+        }
+        return false;
+    }
+
+    /* the number of route changes seen so far, to be passed to put */
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /* add a tree computed after epoch() returned epoch, unless a route changed since,
+       evicting the least recently used tree if the cache is full */
+    public synchronized void put(Tree t, long epoch) {
+        if (epoch != this.epoch) return;   // the tree may miss the change
+        trees.put(key(t.source, t.option), t);
+        if (trees.size() > capacity) {
+            Iterator<Tree> it = trees.values().iterator();
+            it.next();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /* drop the trees in which route v-w with the given distance and price would shorten a path */
+    public synchronized void added(int v, int w, double distance, double price) {
+        epoch++;
+        for (Iterator<Tree> it = trees.values().iterator(); it.hasNext(); ) {
+            Tree t = it.next();
+            double weight = t.option == 0 ? distance : t.option == 1 ? price : 1;
+            if (t.improvedBy(v, w, weight)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /* drop the trees that contain route v-w */
+    public synchronized void removed(int v, int w) {
+        epoch++;
+        for (Iterator<Tree> it = trees.values().iterator(); it.hasNext(); ) {
+            if (it.next().uses(v, w)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /* drop all trees, e.g. when other routes are loaded */
+    public synchronized void clear() {
+        epoch++;
+        invalidations += trees.size();
+        trees.clear();
+        seen.clear();
+    }
+
+    // statistics
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    public synchronized String toString() {
+        long n = hits + misses;
+        return String.format("%d/%d trees, %d hits, %d misses (%.1f%% hit rate), %d evicted, %d invalidated",
+                             trees.size(), capacity, hits, misses, n == 0 ? 0.0 : 100.0*hits/n, evictions, invalidations);
+    }
+}
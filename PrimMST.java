@@ -1,46 +1,62 @@
 
 import java.util.LinkedList;
 
-public class PrimMST {
-    private Edge[] edgeTo;        // edgeTo[v] = shortest edge from tree vertex to non-tree vertex
+public class PrimMST implements MST {
+    private int[] edgeTo;         // edgeTo[v] = arc id of shortest edge from tree vertex to non-tree vertex, -1 if none
     private double[] distTo;      // distTo[v] = weight of shortest such edge
     private boolean[] marked;     // marked[v] = true if v on tree, false otherwise
-    private IndexMinPQ pq;
+    private IndexPQ pq;
+    private CompactGraph G;       // CSR snapshot of the route graph
+    private int option;           // 0 - distance, 1 - price
 
     /* start constructing the MST */
-    public PrimMST(RouteGraph G) {
-        edgeTo = new Edge[G.V()];
+    public PrimMST(RouteGraph graph) {
+        this(graph, IndexPQ.BINARY);
+    }
+
+    /* same, with the priority queue made by queue (not a radix queue, the keys are not monotone) */
+    public PrimMST(RouteGraph graph, IndexPQ.Factory queue) {
+        this(graph.snapshot(), 0, queue);
+    }
+
+    /* the MST of a snapshot by distance (option 0) or price (option 1) */
+    public PrimMST(CompactGraph G, int option, IndexPQ.Factory queue) {
+        this.G = G;
+        this.option = option;
+        edgeTo = new int[G.V()];
         distTo = new double[G.V()];
         marked = new boolean[G.V()];
-        pq = new IndexMinPQ(G.V());
+        pq = queue.create(G.V());
         
-        for (int v = 0; v < G.V(); v++)
+        for (int v = 0; v < G.V(); v++){
             distTo[v] = Double.POSITIVE_INFINITY;
+            edgeTo[v] = -1;
+        }
 
         // run from each vertex to find minimum spanning forest
         for (int v = 0; v < G.V(); v++)
-            if (!marked[v]) prim(G, v);
+            if (!marked[v]) prim(v);
     }
 
     /* Prim's algorithm */
-    private void prim(RouteGraph G, int s) {
+    private void prim(int s) {
         distTo[s] = 0.0;
         pq.insert(s, distTo[s]);    // insert s into the PQ
         while (!pq.isEmpty()) {
             int v = pq.delMin();    // find vertext v with the min distTo
-            scan(G, v);             // scan vertex v
+            scan(v);                // scan vertex v
         }
     }
 
     /* check all v's neighbors to look for edges to add to tree next */
-    private void scan(RouteGraph G, int v) {
+    private void scan(int v) {
         marked[v] = true;
-        for (Edge e : G.adj(v)) {
-            int w = e.other(v);
+        for (int a = G.begin(v), end = G.end(v); a < end; a++) {
+            int w = G.target(a);
             if (marked[w]) continue;         // v-w is obsolete edge
-            if (e.distance() < distTo[w]) {
-                distTo[w] = e.distance();    
-                edgeTo[w] = e;
+            if (G.weight(a, option) < distTo[w]) {
+                distTo[w] = G.weight(a, option);
+                edgeTo[w] = a;
                 if (pq.contains(w)) pq.decreaseKey(w, distTo[w]);
                 else                pq.insert(w, distTo[w]);
             }
@@ -51,9 +67,8 @@ public class PrimMST {
     public Iterable<Edge> edges() {
         LinkedList<Edge> mst = new LinkedList<Edge>();
         for (int v = 0; v < edgeTo.length; v++) {
-            Edge e = edgeTo[v];
-            if (e != null) {
-                mst.add(e);
+            if (edgeTo[v] != -1) {
+                mst.add(G.edge(edgeTo[v]));
             }
         }
         return mst;
@@ -63,7 +78,7 @@ public class PrimMST {
     public double weight() {
         double weight = 0.0;
         for (Edge e : edges())
-            weight += e.distance();
+            weight += e.weight(option);
         return weight;
     }
 }
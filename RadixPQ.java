@@ -0,0 +1,147 @@
+/*************************************************************************
+ *  Description: indexed radix heap for keys that are whole multiples    *
+ *               of 1/scale, e.g. prices in cents with scale = 100       *
+ *                                                                       *
+ *  Keys are kept as integers u = key*scale. Bucket 0 holds the items    *
+ *  whose key equals the last key removed, and bucket b > 0 the items    *
+ *  whose key first differs from it in bit b-1. When bucket 0 runs dry,  *
+ *  the first non-empty bucket is emptied into lower ones around its     *
+ *  smallest key, and each item moves down at most 64 times in total.    *
+ *  No comparisons between keys are needed to keep the buckets, but the  *
+ *  keys removed must never decrease, as in Dijkstra's algorithm with    *
+ *  nonnegative weights; Prim's algorithm cannot use this queue.         *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.NoSuchElementException;
+
+public class RadixPQ implements IndexPQ {
+    private static final int BUCKETS = 65;
+    private final int max;            // the maximum number of items
+    private final double scale;       // keys are whole multiples of 1/scale
+    private int n;                    // current number of items
+    private long last;                // the last key removed, in units of 1/scale
+    private final long[] units;       // units[i] = key of item i in units of 1/scale
+    private final double[] keys;      // keys[i] = key of item i as given
+    private final int[] bucket;       // bucket[i] = bucket of item i, -1 if not in the queue
+    private final int[] next, prev;   // doubly linked bucket lists, -1 at the ends
+    private final int[] head = new int[BUCKETS];
+
+    /* constructor */
+    public RadixPQ(int max, double scale){
+        if (max < 0) throw new IllegalArgumentException();
+        if (!(scale > 0)) throw new IllegalArgumentException("Scale must be positive");
+        this.max = max;
+        this.scale = scale;
+        units = new long[max];
+        keys = new double[max];
+        bucket = new int[max];
+        next = new int[max];
+        prev = new int[max];
+        java.util.Arrays.fill(bucket, -1);
+        java.util.Arrays.fill(head, -1);
+    }
+
+    public void insert(int i, double key) {
+        if (contains(i)) throw new IllegalArgumentException("index is already in the priority queue");
+        keys[i] = key;
+        units[i] = units(key);
+        link(i, bucketOf(units[i]));
+        n++;
+    }
+
+    public int delMin() {
+        fill();
+        int min = head[0];
+        unlink(min);
+        bucket[min] = -1;
+        n--;
+        return min;
+    }
+
+    public double minKey() {
+        fill();
+        return keys[head[0]];
+    }
+
+    // a key that is not smaller than the current one is ignored
+    public void decreaseKey(int i, double key) {
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        if (key >= keys[i]) return;
+        long u = units(key);
+        keys[i] = key;
+        units[i] = u;
+        int b = bucketOf(u);
+        if (b != bucket[i]) {
+            unlink(i);
+            link(i, b);
+        }
+    }
+
+    public void clear() {
+        for (int b = 0; b < BUCKETS; b++) {
+            for (int i = head[b]; i != -1; i = next[i])
+                bucket[i] = -1;
+            head[b] = -1;
+        }
+        n = 0;
+        last = 0;
+    }
+
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    public boolean contains(int i) {
+        if (i < 0 || i >= max) throw new IndexOutOfBoundsException();
+        return bucket[i] != -1;
+    }
+
+    // convert a key to whole units, rejecting keys the heap cannot order
+    private long units(double key) {
+        double x = key * scale;
+        long u = Math.round(x);
+        if (!(x >= 0) || x > Long.MAX_VALUE || Math.abs(x - u) > 1e-6 * Math.max(1, x))
+            throw new IllegalArgumentException("Key " + key + " is not a nonnegative multiple of 1/" + scale);
+        if (u < last)
+            throw new IllegalArgumentException("Key " + key + " is below the last key removed");
+        return u;
+    }
+
+    private int bucketOf(long u) {
+        return u == last ? 0 : 64 - Long.numberOfLeadingZeros(u ^ last);
+    }
+
+    // make bucket 0 non-empty by redistributing the first non-empty bucket around its smallest key
+    private void fill() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        if (head[0] != -1) return;
+        int b = 1;
+        while (head[b] == -1) b++;
+        long min = Long.MAX_VALUE;
+        for (int i = head[b]; i != -1; i = next[i])
+            if (units[i] < min) min = units[i];
+        last = min;
+        int i = head[b];
+        head[b] = -1;
+        while (i != -1) {
+            int j = next[i];
+            link(i, bucketOf(units[i]));   // always a lower bucket
+            i = j;
+        }
+    }
+
+    private void link(int i, int b) {
+        bucket[i] = b;
+        prev[i] = -1;
+        next[i] = head[b];
+        if (head[b] != -1) prev[head[b]] = i;
+        head[b] = i;
+    }
+
+    private void unlink(int i) {
+        if (prev[i] != -1) next[prev[i]] = next[i];
+        else               head[bucket[i]] = next[i];
+        if (next[i] != -1) prev[next[i]] = prev[i];
+    }
+}
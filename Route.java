@@ -0,0 +1,24 @@
+/*************************************************************************
+ *  Description: a route found by one of the query engines, the edges    *
+ *               in travel order and their total weight                  *
+ *                                                                       *
+ *************************************************************************/
+
+public class Route {
+    private final double weight;          // total distance, price or hops
+    private final Iterable<Edge> edges;   // edges from the origin to the destination
+
+    public Route(double weight, Iterable<Edge> edges){
+        this.weight = weight;
+        this.edges = edges;
+    }
+
+    // getters
+    public double weight() {
+        return weight;
+    }
+
+    public Iterable<Edge> edges() {
+        return edges;
+    }
+}
@@ -0,0 +1,174 @@
+/*************************************************************************
+ *  Description: versioned binary route file, and a converter between    *
+ *               it and the text format read by RouteGraph.load          *
+ *                                                                       *
+ *  Layout (big-endian, every section starts on an 8-byte boundary):     *
+ *    header     magic, version, V, E, city bytes, 3 reserved ints       *
+ *    offsets    int[V+1]     CSR offsets, arcs of v are                 *
+ *                            offsets[v] .. offsets[v+1]-1               *
+ *    targets    int[2E]      head vertex of each arc                    *
+ *    distance   double[2E]   distance weight of each arc                *
+ *    price      double[2E]   price weight of each arc                   *
+ *    names      int[V+1]     byte offset of each city name              *
+ *    strings    byte[]       UTF-8 city names, back to back             *
+ *                                                                       *
+ *  Usage: java RouteFile data.txt data.bin    (text to binary)          *
+ *         java RouteFile -t data.bin data.txt (binary to text)          *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class RouteFile {
+    public static final int MAGIC = 0x52544731;  // "RTG1"
+    public static final int VERSION = 1;
+    private static final int HEADER = 32;        // header size in bytes
+
+    /* check whether a file starts with the binary magic number */
+    public static boolean isBinary(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            return in.readInt() == MAGIC;
+        } catch(EOFException e){
+            return false;   // too short to be a binary route file
+        }
+    }
+
+    /* write a snapshot and its city names to a binary route file */
+    public static void writeBinary(CompactGraph G, String[] cities, String filename) throws IOException {
+        int V = G.V();
+        int arcs = 2*G.E();
+        byte[][] names = new byte[V][];
+        int nameBytes = 0;
+        for(int v = 0; v < V; v++){
+            names[v] = cities[v].getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[v].length;
+        }
+
+        // write to a temporary file first, so a mapped copy of filename stays intact until the rename
+        Path dest = Paths.get(filename).toAbsolutePath();
+        Path tmp = Files.createTempFile(dest.getParent(), dest.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1<<16))) {
+            // header
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(V);
+            out.writeInt(G.E());
+            out.writeInt(nameBytes);
+            for(int i = 0; i < 3; i++) out.writeInt(0);
+
+            // packed arc arrays
+            for(int v = 0; v < V; v++) out.writeInt(G.begin(v));
+            out.writeInt(V == 0 ? 0 : G.end(V-1));
+            pad(out, (V+1)*4L);
+            for(int a = 0; a < arcs; a++) out.writeInt(G.target(a));
+            pad(out, arcs*4L);
+            for(int a = 0; a < arcs; a++) out.writeDouble(G.distance(a));
+            for(int a = 0; a < arcs; a++) out.writeDouble(G.price(a));
+
+            // city string table
+            int pos = 0;
+            for(int v = 0; v < V; v++){
+                out.writeInt(pos);
+                pos += names[v].length;
+            }
+            out.writeInt(pos);
+            pad(out, (V+1)*4L);
+            for(int v = 0; v < V; v++) out.write(names[v]);
+        } catch(IOException e){
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* open a binary route file and map its arc arrays without reading them */
+    public static MappedGraph map(String filename) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while(header.hasRemaining() && ch.read(header) >= 0);
+            header.flip();
+            if(header.remaining() < HEADER || header.getInt() != MAGIC)
+                throw new IOException(filename+" is not a binary route file");
+            int version = header.getInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported route file version "+version);
+            int V = header.getInt();
+            int E = header.getInt();
+            int nameBytes = header.getInt();
+            if(V < 0 || E < 0 || nameBytes < 0) throw new IOException("Corrupted route file header");
+            long arcs = 2L*E;
+
+            // section positions
+            long offsetsAt  = HEADER;
+            long targetsAt  = offsetsAt + align((V+1)*4L);
+            long distanceAt = targetsAt + align(arcs*4);
+            long priceAt    = distanceAt + arcs*8;
+            long namesAt    = priceAt + arcs*8;
+            long stringsAt  = namesAt + align((V+1)*4L);
+            if(ch.size() < stringsAt + nameBytes) throw new IOException("Truncated route file "+filename);
+
+            // map the arc arrays, the mappings stay valid after the channel is closed
+            MappedGraph G = new MappedGraph(V, E,
+                section(ch, offsetsAt, (V+1)*4L).asIntBuffer(),
+                section(ch, targetsAt, arcs*4).asIntBuffer(),
+                section(ch, distanceAt, arcs*8).asDoubleBuffer(),
+                section(ch, priceAt, arcs*8).asDoubleBuffer(),
+                readCities(ch, V, namesAt, stringsAt, nameBytes));
+            return G;
+        }
+    }
+
+    // the city names are the only part copied onto the heap
+    private static String[] readCities(FileChannel ch, int V, long namesAt, long stringsAt, int nameBytes) throws IOException {
+        MappedByteBuffer names = section(ch, namesAt, (V+1)*4L);
+        byte[] strings = new byte[nameBytes];
+        section(ch, stringsAt, nameBytes).get(strings);
+        String[] cities = new String[V];
+        for(int v = 0; v < V; v++){
+            int from = names.getInt(v*4);
+            int to = names.getInt((v+1)*4);
+            cities[v] = new String(strings, from, to-from, StandardCharsets.UTF_8);
+        }
+        return cities;
+    }
+
+    private static MappedByteBuffer section(FileChannel ch, long position, long size) throws IOException {
+        if(size > Integer.MAX_VALUE) throw new IOException("Route file section too large to map ("+size+" bytes)");
+        return ch.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    private static long align(long n) {
+        return (n + 7) & ~7L;
+    }
+
+    private static void pad(DataOutputStream out, long written) throws IOException {
+        for(long i = written; i < align(written); i++) out.writeByte(0);
+    }
+
+    /* convert between the text and binary formats */
+    public static void main(String[] args){
+        boolean toText = args.length == 3 && args[0].equals("-t");
+        if(args.length != 2 && !toText){
+            System.out.println("Usage: java RouteFile <text file> <binary file>");
+            System.out.println("       java RouteFile -t <binary file> <text file>");
+            return;
+        }
+        String from = toText ? args[1] : args[0];
+        String to = toText ? args[2] : args[1];
+
+        RouteGraph rg = new RouteGraph();
+        rg.load(from);       // load detects the format of the input file
+        if(toText) rg.write(to);
+        else       rg.writeBinary(to);
+        System.out.println("Converted "+from+" to "+to+" ("+rg.V()+" cities, "+rg.E()+" routes)");
+    }
+}
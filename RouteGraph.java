@@ -1,47 +1,128 @@
 
+/*************************************************************************
+ *  Concurrency: queries never lock and never see a route change half    *
+ *  done. They run on an immutable Version, the CSR snapshot of the      *
+ *  routes together with the landmark tables, hierarchies and overlays   *
+ *  built for it, which is read once from a volatile field. Writers      *
+ *  (add, remove, update) are serialized on a lock, change the adjacency *
+ *  lists, and publish a new Version when they are done, or at endUpdate *
+ *  when the changes are batched between beginUpdate and endUpdate. A    *
+ *  Version that is no longer published is reclaimed by the garbage      *
+ *  collector once the last query holding it has finished. The flight    *
+ *  schedule is an immutable Timetable of its own, replaced by a copy    *
+ *  without the flights of a removed route. Loading a file is not meant  *
+ *  to overlap with queries.                                             *
+ *                                                                       *
+ *************************************************************************/
+
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.StringTokenizer;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class RouteGraph {
+    public static final int PRIM = 0, KRUSKAL = 1, BORUVKA = 2;   // MST methods
+    
     private int V;                                // number of verticies
     private int E;                                // number of edges
-    private EdgeList [] adj;                      // adjacency list
+    private EdgeStore store;                      // routes, adjacency lists and edge index, null until materialized
     private String [] cities;                     // a list of city names
     private HashMap<String, Integer> cityIndex;   // a map from city name to city id
-    private HashMap<String, Integer> edgeIndex;   // a map from existing edge key to 1
+    private volatile Version current;             // the published routes, read by queries without locking
+    private volatile boolean pending;             // true if the adjacency lists have changes not yet published
+    private final Object lock = new Object();     // held by writers
+    private int batch;                            // nesting depth of beginUpdate
+    private long versions;                        // number of versions published
+    private long topology;                        // number of times routes were added or removed
+    private Landmarks landmarks;                  // ALT lower bound tables for the next version, null if not in use
+    private volatile boolean hierarchies;         // true if queries use contraction hierarchies
+    private volatile boolean overlays;            // true if queries use multilevel overlays
+    private volatile PathTreeCache trees;         // shortest path trees of recent sources, null if not in use
+    private volatile Timetable schedule;          // timed flights on the routes, null if none were loaded
+    private volatile int transfer;                // minutes needed between two flights of a trip
+    private final double[] delta = new double[2];  // delta-stepping bucket width per option, 0 for the default
+    private ArrayList<DynamicShortestPath> dynamic = new ArrayList<DynamicShortestPath>(); // trees repaired on each change
+    
+    /* an immutable state of the routes that queries run on */
+    private static class Version {
+        private final long id;                // increases with each publication
+        private final CompactGraph graph;     // CSR snapshot of the routes
+        private final Landmarks landmarks;    // ALT tables valid for graph, null if none
+        private final long topology;          // the routes graph holds, up to their weights
+        private final AtomicReference<OverlayPartition> cells; // shared by the versions of one topology, built on first use
+        private final AtomicReferenceArray<ContractionHierarchy> ch;     // built on first use
+        private final AtomicReferenceArray<MultilevelOverlay> overlay;   // customized on first use
+        
+        Version(long id, CompactGraph graph, Landmarks landmarks, long topology, AtomicReference<OverlayPartition> cells){
+            this(id, graph, landmarks, topology, cells,
+                 new AtomicReferenceArray<ContractionHierarchy>(2), new AtomicReferenceArray<MultilevelOverlay>(2));
+        }
+        
+        private Version(long id, CompactGraph graph, Landmarks landmarks, long topology, AtomicReference<OverlayPartition> cells,
+                        AtomicReferenceArray<ContractionHierarchy> ch, AtomicReferenceArray<MultilevelOverlay> overlay){
+            this.id = id;
+            this.graph = graph;
+            this.landmarks = landmarks;
+            this.topology = topology;
+            this.cells = cells;
+            this.ch = ch;
+            this.overlay = overlay;
+        }
+        
+        // the same routes with other landmark tables, sharing the hierarchies and overlays built so far
+        Version withLandmarks(Landmarks landmarks){
+            return new Version(id, graph, landmarks, topology, cells, ch, overlay);
+        }
+    }
     
     /* a defualt constructor */
     public RouteGraph(){
     }
     
-    /* construct a graph by reading a input file containing routes information */
+    /* construct a graph by reading a input file containing routes information,
+       the file may be either in the text format or in the binary format of RouteFile */
     public void load(String filename){
+        load(filename, false);
+    }
+    
+    /* same as load(filename), but a text file is parsed in parallel if parallel is true */
+    public void load(String filename, boolean parallel){
+        synchronized(lock){
+            batch = 0;
+            loadFile(filename, parallel);
+            if(cities == null) init(0);    // nothing was ever read, queries see no cities
+            if(pending) publish();   // the routes read from a text file
+        }
+    }
+    
+    private void loadFile(String filename, boolean parallel){
         try {
+            if(RouteFile.isBinary(filename)){
+                loadBinary(filename);
+                return;
+            }
+            if(parallel){
+                loadParallel(filename);
+                return;
+            }
+            
             // set up input file stream
             FileInputStream fis =new FileInputStream(filename);
             BufferedReader in=new BufferedReader(new InputStreamReader(fis));
             
             // read vertices number
-            V = Integer.parseInt(in.readLine());
-            if(V < 0) throw new IllegalArgumentException("Number of vertices must be nonnegative");
-            
-            // initialization
-            E = 0;
-            adj =  new EdgeList[V];
-            cities = new String[V];
-            cityIndex = new HashMap<String, Integer>(V);
-            edgeIndex = new HashMap<String, Integer>(V*4); // assume the graph is sparse
+            init(Integer.parseInt(in.readLine()));
     
             // read city names
-            for(int v = 0; v < V; v++){
-                String c = in.readLine();
-                cities[v] = c;
-                cityIndex.put(c,v);
-                adj[v] = new EdgeList();
-            }
+            for(int v = 0; v < V; v++)
+                addCity(v, in.readLine());
             
             // read routes information
             String line;
@@ -52,7 +133,7 @@ public class RouteGraph {
                 double distance = Double.parseDouble(st.nextToken()); // distance
                 double price = Double.parseDouble(st.nextToken());    // price
                 Edge e =new Edge(v, w, distance, price);              // create a edge
-                addEdge(e);                                           // add edge e to the graph
+                insert(e);                                            // add edge e to the graph
             }
             
             in.close();
@@ -62,47 +143,174 @@ public class RouteGraph {
         }
     }
     
+    /* parse the routes on a fork-join pool, then add them in file order so that
+       duplicates are detected exactly as in the sequential load */
+    private void loadParallel(String filename) throws IOException {
+        RouteLoader loader = new RouteLoader(filename);
+        String[] names = loader.cities();
+        init(names.length);
+        for(int v = 0; v < V; v++)
+            addCity(v, names[v]);
+        for(RouteLoader.Chunk c : loader.chunks())
+            for(int i = 0; i < c.size(); i++)
+                insert(new Edge(c.v(i), c.w(i), c.distance(i), c.price(i)));
+    }
+    
+    // reset the graph to n cities and no routes
+    private void init(int n){
+        if(n < 0) throw new IllegalArgumentException("Number of vertices must be nonnegative");
+        V = n;
+        E = 0;
+        store = new EdgeStore(V, V*2); // assume the graph is sparse
+        cities = new String[V];
+        cityIndex = new HashMap<String, Integer>(V);
+        pending = true;    // published when the file has been read
+        topology++;
+        landmarks = null;
+        schedule = null;
+        if(trees != null) trees.clear();
+        dynamic.clear();
+    }
+    
+    private void addCity(int v, String c){
+        cities[v] = c;
+        cityIndex.put(c,v);
+    }
+    
+    /* map a binary route file and query it in place, only the city names are read up front */
+    private void loadBinary(String filename) throws IOException {
+        MappedGraph m = RouteFile.map(filename);
+        V = m.V();
+        E = m.E();
+        cities = m.cities();
+        cityIndex = new HashMap<String, Integer>(V);
+        for(int v = 0; v < V; v++)
+            cityIndex.put(cities[v],v);
+        store = null;      // built from the mapped arcs on the first change, see materialize()
+        landmarks = null;
+        schedule = null;
+        if(trees != null) trees.clear();
+        dynamic.clear();
+        current = new Version(++versions, m, null, ++topology, new AtomicReference<OverlayPartition>());
+        pending = false;
+    }
+    
+    // freeze the adjacency lists into the version that queries see, with the caller holding the lock;
+    // while only weights changed, the new version keeps the overlay cells of the last one
+    private void publish(){
+        Version last = current;
+        AtomicReference<OverlayPartition> cells = last != null && last.topology == topology
+            ? last.cells : new AtomicReference<OverlayPartition>();
+        current = new Version(++versions, new ArrayGraph(store), landmarks, topology, cells);
+        pending = false;
+    }
+    
+    // publish unless a batch is open
+    private void changed(){
+        if(batch == 0) publish();
+    }
+    
+    /* start a batch of changes, queries keep seeing the routes as they were until endUpdate,
+       batches may be nested */
+    public void beginUpdate(){
+        synchronized(lock){
+            batch++;
+        }
+    }
+    
+    /* end a batch of changes, and publish them all at once when the outermost batch ends */
+    public void endUpdate(){
+        synchronized(lock){
+            if(batch == 0) throw new IllegalStateException("endUpdate without beginUpdate");
+            if(--batch == 0 && pending) publish();
+        }
+    }
+    
+    /* build the mutable edge store from the snapshot of a mapped file */
+    private void materialize(){
+        if(store != null) return;
+        CompactGraph snapshot = current.graph;
+        store = new EdgeStore(V, E);
+        for(int v = 0; v < V; v++){
+            for(int a = snapshot.begin(v), end = snapshot.end(v); a < end; a++){
+                if(snapshot.target(a) < v) continue; // take each route from its smaller end only
+                store.add(snapshot.edge(a));
+            }
+        }
+    }
+    
     /* add an edge to the graph */
     public boolean addEdge(Edge e){
+        synchronized(lock){
+            boolean done = insert(e);
+            if(done) changed();
+            return done;
+        }
+    }
+    
+    // add an edge to the adjacency lists, with the caller holding the lock
+    private boolean insert(Edge e){
         int v = e.v();
         int w = e.w();
+        materialize();
+        validateVertex(v);
+        validateVertex(w);
         
         // do not add e if it is already exists
-        if(edgeIndex.containsKey(e.key())){
+        if(store.add(e) == -1){
             System.out.println("Action ignored: edge already exists!");
             return false;
         } else {
-            edgeIndex.put(e.key(),1);
-            validateVertex(v);
-            validateVertex(w);
-            adj[v].add(e);
-            adj[w].add(e);
             E++;
+            pending = true;   // the published version no longer matches
+            topology++;       // and its overlay cells neither
+            landmarks = null; // a new route may undercut the landmark bounds
+            if(trees != null) trees.added(v, w, e.distance(), e.price());
+            for(DynamicShortestPath d : dynamic) d.added(e);
             return true;
         }
     }
 
     /* list all direct routes (including the reversed duplicates that facilitate user's search) */
     public void list(){
-        System.out.format("%-15s%15s\t%s\t\t%s\n","From","To","Miles","Price");
-        
-        // for each city, print all possible direct routes
-        for(int v = 0; v < V; v++){
-            for(Edge e : adj(v)){
-                int w = e.other(v);
-                System.out.format("%-15s%15s\t%.1f\t\t%.1f\n",cities[v],cities[w],e.distance(),e.price());
+        synchronized(lock){
+            materialize();
+            System.out.format("%-15s%15s\t%s\t\t%s\n","From","To","Miles","Price");
+            
+            // for each city, print all possible direct routes
+            for(int v = 0; v < V; v++){
+                for(Edge e : adj(v)){
+                    int w = e.other(v);
+                    System.out.format("%-15s%15s\t%.1f\t\t%.1f\n",cities[v],cities[w],e.distance(),e.price());
+                }
             }
         }
     }
     
     /* compute and print a minimal spaning tree */
     public void getMST(){
-        // create a PrimMST object and compute the MST
-        PrimMST mst = new PrimMST(this);
+        getMST(PRIM, 0);
+    }
+    
+    /* compute and print a minimal spanning tree with method PRIM, KRUSKAL or BORUVKA,
+       by distance (option 0) or price (option 1) */
+    public void getMST(int method, int option){
+        MST mst = mst(method, option);
         
         // print edges in the MST
         for (Edge e : mst.edges())
-            System.out.format("%-15s%15s\t%.2f\n",cities[e.v()],cities[e.w()],e.distance());
+            System.out.format("%-15s%15s\t%.2f\n",cities[e.v()],cities[e.w()],e.weight(option));
+    }
+    
+    /* a minimum spanning forest of the published routes, see getMST */
+    public MST mst(int method, int option){
+        CompactGraph G = snapshot();
+        switch(method){
+            case PRIM:    return new PrimMST(G, option, IndexPQ.BINARY);
+            case KRUSKAL: return new KruskalMST(G, option);
+            case BORUVKA: return new BoruvkaMST(G, option, ForkJoinPool.commonPool());
+            default: throw new IllegalArgumentException("Unknown MST method "+method);
+        }
     }
     
     /* compute and print the shortest path based on distance */
@@ -111,17 +319,14 @@ public class RouteGraph {
         int v = cityIndex.get(src).intValue();
         int w = cityIndex.get(dest).intValue();
 	
-        // create a ShortestPath object with weight-option 0 (distance)
-        ShortestPath sp = new ShortestPath(this,0);
-	
-        // compute shortest path from vertex v using Dijkstra's algorithm
-        sp.dijkstraSP(v);
+        // compute a shortest path from vertex v to w with weight-option 0 (distance)
+        Route r = route(v, w, 0);
 
         // print each edge of a shortest path in order
-        if(sp.hasPathTo(w)){
-            System.out.println("From "+src+" to "+dest+" (Total miles: "+sp.distTo(w)+")");
+        if(r != null){
+            System.out.println("From "+src+" to "+dest+" (Total miles: "+r.weight()+")");
             int from = v;
-            for(Edge e : sp.pathTo(w)){
+            for(Edge e : r.edges()){
                 int to = e.other(from);
                 System.out.println(cities[from]+"-->"+cities[to]+" ("+e.distance()+" mils)");
                 from = to;
@@ -138,17 +343,14 @@ public class RouteGraph {
         int v = cityIndex.get(src).intValue();
         int w = cityIndex.get(dest).intValue();
 
-        // create a ShortestPath object with weight-option 0 (distance)
-        ShortestPath sp = new ShortestPath(this,1);
-	
-        // compute shortest path from vertex v using Dijkstra's algorithm
-        sp.dijkstraSP(v);
+        // compute a shortest path from vertex v to w with weight-option 1 (price)
+        Route r = route(v, w, 1);
 
         // print each edge of a shortest path in order
-        if(sp.hasPathTo(w)){
-            System.out.println("From "+src+" to "+dest+" (Total cost: $"+sp.distTo(w)+")");
+        if(r != null){
+            System.out.println("From "+src+" to "+dest+" (Total cost: $"+r.weight()+")");
             int from = v;
-            for(Edge e : sp.pathTo(w)){
+            for(Edge e : r.edges()){
                 int to = e.other(from);
                 System.out.println(cities[from]+"-->"+cities[to]+" (cost $"+e.price()+")");
                 from = to;
@@ -161,23 +363,251 @@ public class RouteGraph {
 
     }
     
+    /* find a shortest path from v to w by distance (option 0), price (option 1) or hops (option 2)
+       with the fastest engine available, return null if there is none */
+    private Route route(int v, int w, int option){
+        // a cached tree from v, built on the second miss of v since queries tend to repeat their
+        // origins; a first miss falls through to the point-to-point engines below
+        PathTreeCache cache = trees;
+        if(cache != null){
+            PathTreeCache.Tree t = cache.get(v, option);
+            if(t == null && cache.repeated(v, option)) t = tree(cache, v, option);
+            if(t != null) return t.hasPathTo(w) ? new Route(t.distTo(w), t.pathTo(w)) : null;
+        }
+        
+        // everything below runs on one published version, whatever writers do meanwhile
+        Version cur = current;
+        
+        // hops, BFS from both ends that switches to bottom-up levels where the frontier explodes
+        if(option == 2) return HopsBFS.forThread(cur.graph).route(v, w);
+        
+        // multilevel overlays, customized once per version on cells that last until routes are added or removed
+        if(overlays) return overlay(cur, option).route(v, w);
+        
+        // contraction hierarchies, built once per version
+        if(hierarchies) return hierarchy(cur, option).route(v, w);
+        
+        // otherwise Dijkstra's algorithm, goal-directed if landmarks are loaded,
+        // on the labels of this thread's workspace so that no O(V) arrays are allocated per query
+        ShortestPath sp = new ShortestPath(cur.graph,option,SearchWorkspace.forThread(cur.graph.V()));
+        if(cur.landmarks != null) sp.astarSP(v, w, cur.landmarks);
+        else                      sp.bidirectionalSP(v, w);
+        if(!sp.hasPathTo(w)) return null;
+        return new Route(sp.distTo(w), sp.pathTo(w));
+    }
+    
+    // the contraction hierarchy of a version, built on first use
+    private static ContractionHierarchy hierarchy(Version cur, int option){
+        ContractionHierarchy h = cur.ch.get(option);
+        if(h == null){
+            cur.ch.compareAndSet(option, null, new ContractionHierarchy(cur.graph, option, true));
+            h = cur.ch.get(option);
+        }
+        return h;
+    }
+    
+    // the overlay of a version, customized on first use, on the cells of its topology
+    private static MultilevelOverlay overlay(Version cur, int option){
+        MultilevelOverlay o = cur.overlay.get(option);
+        if(o == null){
+            OverlayPartition p = cur.cells.get();
+            if(p == null){
+                cur.cells.compareAndSet(null, new OverlayPartition(cur.graph));
+                p = cur.cells.get();
+            }
+            cur.overlay.compareAndSet(option, null, new MultilevelOverlay(p, cur.graph, option, ForkJoinPool.commonPool()));
+            o = cur.overlay.get(option);
+        }
+        return o;
+    }
+    
+    /* weights of the shortest paths by distance (option 0), price (option 1) or hops (option 2)
+       from every origin to every destination, table[i][j] for origins[i] and destinations[j],
+       +Infinity if there is none; with contraction hierarchies the batch shares bucket entries,
+       otherwise each search from the smaller side stops once it has settled the whole other side */
+    public double[][] distanceTable(String[] origins, String[] destinations, int option){
+        int[] from = new int[origins.length], to = new int[destinations.length];
+        for(int i = 0; i < from.length; i++) from[i] = cityIndex.get(origins[i]).intValue();
+        for(int j = 0; j < to.length; j++) to[j] = cityIndex.get(destinations[j]).intValue();
+        Version cur = current;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if(hierarchies && option != 2) return hierarchy(cur, option).table(from, to, pool);
+        
+        // routes are undirected, so searching from the destinations gives the same table transposed
+        boolean swap = to.length < from.length;
+        int[] sources = swap ? to : from, targets = swap ? from : to;
+        double[][] table = new double[from.length][to.length];
+        ParallelRange.run(pool, 0, sources.length, 1, (lo, hi) -> {
+            SearchWorkspace ws = SearchWorkspace.forThread(cur.graph.V());
+            for(int i = lo; i < hi; i++){
+                ShortestPath sp = new ShortestPath(cur.graph, option, ws);
+                if(option == 2) sp.bfsSP(sources[i], targets);
+                else            sp.dijkstraSP(sources[i], targets);
+                for(int j = 0; j < targets.length; j++){
+                    if(swap) table[j][i] = sp.distTo(targets[j]);
+                    else     table[i][j] = sp.distTo(targets[j]);
+                }
+            }
+        });
+        return table;
+    }
+    
+    // compute the shortest path tree from v and add it to the cache
+    private PathTreeCache.Tree tree(PathTreeCache cache, int v, int option){
+        // a writer drops the trees a change affects before it publishes the change, so a tree is only
+        // cached if it was computed on the latest routes and no change came in meanwhile
+        long epoch = cache.epoch();
+        boolean stale = pending;
+        Version cur = current;
+        ShortestPath sp = new ShortestPath(cur.graph,option,SearchWorkspace.forThread(cur.graph.V()));
+        if(option == 2) sp.bfsSP(v);
+        else            sp.dijkstraSP(v);
+        PathTreeCache.Tree t = new PathTreeCache.Tree(v, option, sp);
+        if(!stale) cache.put(t, epoch);
+        return t;
+    }
+    
+    /* keep the shortest path trees of up to capacity recent (source, option) pairs that were
+       asked for more than once and answer queries from them, a capacity of 0 turns the cache off */
+    public void useTreeCache(int capacity){
+        trees = capacity > 0 ? new PathTreeCache(capacity) : null;
+    }
+    
+    /* the tree cache, for its statistics, null if not in use */
+    public PathTreeCache treeCache(){
+        return trees;
+    }
+    
+    /* set the bucket width of pathsFrom by distance (option 0) or price (option 1),
+       0 to derive it from the routes (see DeltaStepping.defaultDelta) */
+    public void useDelta(int option, double width){
+        if(option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        if(width < 0) throw new IllegalArgumentException("Bucket width must be nonnegative");
+        delta[option] = width;
+    }
+    
+    /* the shortest paths from src to every city by distance (option 0) or price (option 1),
+       by delta-stepping on the common pool, for whole-network jobs */
+    public DeltaStepping pathsFrom(String src, int option){
+        if(option != 0 && option != 1) throw new IllegalArgumentException("Option must be 0 (distance) or 1 (price)");
+        CompactGraph g = current.graph;
+        double width = delta[option] > 0 ? delta[option] : DeltaStepping.defaultDelta(g, option);
+        return new DeltaStepping(g, option, cityIndex.get(src).intValue(), width, ForkJoinPool.commonPool());
+    }
+    
+    /* answer distance and price queries with contraction hierarchies, one per weight option,
+       built in parallel on first use and again after each change to the routes */
+    public void useHierarchies(boolean enabled){
+        hierarchies = enabled;
+    }
+    
+    /* answer distance and price queries with multilevel overlays (ahead of contraction hierarchies):
+       the cells are cut once and kept while routes only change their distance or price, and each
+       version customizes them for its weights in parallel on first use */
+    public void useOverlays(boolean enabled){
+        overlays = enabled;
+    }
+    
+    /* read timed flights (see Timetable for the format) for the earliest arrival queries, where
+       a trip needs transfer minutes between landing in a city and leaving it again; a line that
+       is not a flight, and a flight without a route between its cities, are reported and ignored */
+    public void loadSchedule(String filename, int transfer){
+        if(transfer < 0) throw new IllegalArgumentException("Transfer time must be nonnegative");
+        IntList from = new IntList(), to = new IntList(), dep = new IntList(), arr = new IntList();
+        CompactGraph g = snapshot();
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(filename)));
+            String line;
+            for(int n = 1; (line=in.readLine())!=null; n++){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) continue;
+                StringTokenizer st = new StringTokenizer(line, " ,\t");
+                int v, w, d, a;
+                try{
+                    v = Integer.parseInt(st.nextToken())-1;           // city the flight leaves
+                    w = Integer.parseInt(st.nextToken())-1;           // city it lands in
+                    d = Timetable.parse(st.nextToken());              // departure
+                    a = Timetable.parse(st.nextToken());              // arrival
+                } catch(NoSuchElementException | IllegalArgumentException e){
+                    System.out.println("Flight ignored: line "+n+" is not \"from to hh:mm hh:mm\"!");
+                    continue;
+                }
+                if(v < 0 || v >= V || w < 0 || w >= V || v == w){
+                    System.out.println("Flight ignored: line "+n+" does not name two cities!");
+                    continue;
+                }
+                if(a <= d){
+                    System.out.println("Flight ignored: line "+n+" lands before it leaves!");
+                    continue;
+                }
+                if(!hasRoute(g, v, w)){
+                    System.out.println("Flight ignored: no route from "+cities[v]+" to "+cities[w]+"!");
+                    continue;
+                }
+                from.add(v);
+                to.add(w);
+                dep.add(d);
+                arr.add(a);
+            }
+            in.close();
+        } catch(IOException e){
+            e.printStackTrace();
+            return;
+        }
+        this.transfer = transfer;
+        schedule = new Timetable(V, from.size(), from.toArray(), to.toArray(), dep.toArray(), arr.toArray());
+    }
+    
+    // true if g has a route between v and w
+    private static boolean hasRoute(CompactGraph g, int v, int w){
+        for(int a = g.begin(v), end = g.end(v); a < end; a++)
+            if(g.target(a) == w) return true;
+        return false;
+    }
+    
+    /* the timed flights, null if no schedule was loaded */
+    public Timetable schedule(){
+        return schedule;
+    }
+    
+    /* prepare k landmarks for the distance and price queries, reading the tables from
+       filename if it holds tables for the current routes, and saving them there otherwise */
+    public void useLandmarks(int k, String filename){
+        synchronized(lock){
+            if(V == 0) return;       // no routes (e.g. the routes file could not be read), no tables to keep
+            if(pending) publish();   // the tables are computed for the published routes
+            try {
+                landmarks = Landmarks.load(filename, this, k);
+            } catch(IOException e){   // e.g. a truncated file, replaced below
+                System.out.println("Landmark tables in "+filename+" are unreadable, computing them again");
+                landmarks = null;
+            }
+            if(landmarks == null){
+                landmarks = new Landmarks(this, k);
+                try {
+                    landmarks.save(filename);
+                } catch(IOException e){
+                    e.printStackTrace();
+                }
+            }
+            current = current.withLandmarks(landmarks);
+        }
+    }
+    
     /* compute and print the shortest path based on number of hops */
     public void getHopsSP(String src, String dest){
         // get city ids using city names
         int v = cityIndex.get(src).intValue();
         int w = cityIndex.get(dest).intValue();
 
-        // create a ShortestPath object with weight-option 2 (number of hops)
-        ShortestPath sp = new ShortestPath(this,2);
-	
-        // compute shortest path from v using BFS search
-        sp.bfsSP(v);
+        // compute a shortest path from vertex v to w with weight-option 2 (number of hops)
+        Route r = route(v, w, 2);
 
         // print each edge of a shortest path in order
-        if (sp.hasPathTo(w)){
-            System.out.println("From "+src+" to "+dest+" (Total number of hops: "+(int)sp.distTo(w)+")");
+        if (r != null){
+            System.out.println("From "+src+" to "+dest+" (Total number of hops: "+(int)r.weight()+")");
             int from = v;
-            for (Edge e : sp.pathTo(w)){
+            for (Edge e : r.edges()){
                 int to = e.other(from);
                 System.out.println(cities[from]+"-->"+cities[to]);
                 from = to;
@@ -188,18 +618,211 @@ public class RouteGraph {
         }
     }
     
-    /* compute and print all routes cost max or less using a recursive / backtrack / pruning algorithm */
+    /* the shortest routes from src to dest by distance (option 0) or price (option 1) with at
+       most 0, 1, .. maxStops connections, in one run; routes[c] is null if there is none */
+    public Route[] routesWithStops(String src, String dest, int option, int maxStops){
+        if(maxStops < 0) throw new IllegalArgumentException("Number of stops must be nonnegative");
+        int v = cityIndex.get(src).intValue();
+        int w = cityIndex.get(dest).intValue();
+        HopLimitedShortestPath sp = new HopLimitedShortestPath(snapshot(), option, v, maxStops+1);
+        Route[] routes = new Route[maxStops+1];
+        for(int c = 0; c <= maxStops; c++)
+            if(sp.hasPathTo(w, c+1)) routes[c] = new Route(sp.distTo(w, c+1), sp.pathTo(w, c+1));
+        return routes;
+    }
+    
+    /* print the cheapest route from src to dest for each limit of 0 .. maxStops connections */
+    public void getStopsSP(String src, String dest, int maxStops){
+        int v = cityIndex.get(src).intValue();
+        Route[] routes = routesWithStops(src, dest, 1, maxStops);
+        for(int c = 0; c <= maxStops; c++){
+            Route r = routes[c];
+            if(r == null){
+                System.out.println("No path found from "+src+" to "+dest+" with at most "+c+" stops");
+            } else if(c > 0 && routes[c-1] != null && routes[c-1].weight() <= r.weight()){
+                System.out.println("No cheaper path with at most "+c+" stops");
+            } else {
+                System.out.println("At most "+c+" stops (Total cost: $"+r.weight()+")");
+                int from = v;
+                for(Edge e : r.edges()){
+                    int to = e.other(from);
+                    System.out.println(cities[from]+"-->"+cities[to]+" (cost $"+e.price()+")");
+                    from = to;
+                }
+            }
+            System.out.println();
+        }
+    }
+    
+    /* the trip from src leaving at time (minutes from the start of the schedule) or later that
+       lands in dest first, null if there is none */
+    public ConnectionScan.Journey earliestArrival(String src, String dest, int time){
+        Timetable tt = schedule;
+        if(tt == null) throw new IllegalStateException("No schedule loaded");
+        return ConnectionScan.forThread(tt, transfer).earliestArrival(cityIndex.get(src).intValue(), cityIndex.get(dest).intValue(), time);
+    }
+    
+    /* for every departure from src between from and until, the trip that lands in dest first,
+       except those a later departure in the window lands no later than, by departure */
+    public ArrayList<ConnectionScan.Journey> departures(String src, String dest, int from, int until){
+        Timetable tt = schedule;
+        if(tt == null) throw new IllegalStateException("No schedule loaded");
+        return ConnectionScan.forThread(tt, transfer).profile(cityIndex.get(src).intValue(), cityIndex.get(dest).intValue(), from, until);
+    }
+    
+    /* print the trip from src leaving at time or later that lands in dest first */
+    public void getEarliestArrival(String src, String dest, int time){
+        if(schedule == null){
+            System.out.println("No schedule loaded");
+            return;
+        }
+        ConnectionScan.Journey j = earliestArrival(src, dest, time);
+        if(j == null) System.out.println("No flights from "+src+" to "+dest+" after "+Timetable.format(time));
+        else          printTrip(schedule, j);
+    }
+    
+    /* print every departure from src between from and until that no later departure beats to dest */
+    public void getDepartures(String src, String dest, int from, int until){
+        if(schedule == null){
+            System.out.println("No schedule loaded");
+            return;
+        }
+        Timetable tt = schedule;
+        ArrayList<ConnectionScan.Journey> trips = departures(src, dest, from, until);
+        if(trips.isEmpty()) System.out.println("No flights from "+src+" to "+dest+" between "+Timetable.format(from)+" and "+Timetable.format(until));
+        for(ConnectionScan.Journey j : trips) printTrip(tt, j);
+    }
+    
+    // print a trip flight by flight
+    private void printTrip(Timetable tt, ConnectionScan.Journey j){
+        if(j.size() == 0){
+            System.out.println("Already there!");
+            return;
+        }
+        System.out.println("Leave "+Timetable.format(j.departure())+", arrive "+Timetable.format(j.arrival())+" ("+j.size()+" flights)");
+        for(int i = 0; i < j.size(); i++){
+            int f = j.leg(i);
+            System.out.println(cities[tt.from(f)]+" "+Timetable.format(tt.departure(f))+" --> "+cities[tt.to(f)]+" "+Timetable.format(tt.arrival(f)));
+        }
+        System.out.println();
+    }
+    
+    /* up to k loopless routes from src to dest by distance (option 0) or price (option 1),
+       best first, the spur searches run on the common pool */
+    public ArrayList<Route> alternatives(String src, String dest, int option, int k){
+        int v = cityIndex.get(src).intValue();
+        int w = cityIndex.get(dest).intValue();
+        return new KShortestPaths(snapshot(), option, ForkJoinPool.commonPool()).paths(v, w, k);
+    }
+    
+    /* every Pareto-optimal route from src to dest by miles, price and hops, in one search */
+    public ArrayList<ParetoSearch.Journey> paretoRoutes(String src, String dest){
+        int v = cityIndex.get(src).intValue();
+        int w = cityIndex.get(dest).intValue();
+        return new ParetoSearch(snapshot()).front(v, w);
+    }
+    
+    /* print the trade-offs between miles, price and hops from src to dest */
+    public void getParetoSP(String src, String dest){
+        int v = cityIndex.get(src).intValue();
+        ArrayList<ParetoSearch.Journey> front = paretoRoutes(src, dest);
+        if(front.isEmpty()){
+            System.out.println("No path found from "+src+" to "+dest);
+            return;
+        }
+        for(ParetoSearch.Journey j : front){
+            System.out.println(j.distance()+" mils, $"+j.price()+", "+j.hops()+" hops:");
+            int from = v;
+            for(Edge e : j.edges()){
+                int to = e.other(from);
+                System.out.println(cities[from]+"-->"+cities[to]+" ("+e.distance()+" mils, cost $"+e.price()+")");
+                from = to;
+            }
+            System.out.println();
+        }
+    }
+    
+    /* print all trips that cost max or less */
     public void getAffordable(double max){
-        // for each vertext v, find all affordable routes starting from v
-        for(int v = 0; v < V; v++){
-            LinkedList<Edge> path = new LinkedList<Edge>();  // current path
-            getAffordable(v,v,0,max,path,new boolean[V]);    // recursive call, see below
+        getAffordable(max, Long.MAX_VALUE);
+    }
+    
+    /* print up to limit trips that cost max or less, return the number printed */
+    public long getAffordable(double max, long limit){
+        // the searches run on the pool, the trips are printed here as they stream in
+        PrintStream out = System.out;
+        return getAffordable(max, limit, trip -> {
+            StringBuilder sb = new StringBuilder();
+            int from = trip.origin();
+            for(Edge e : trip.edges()){
+                int to = e.other(from);
+                sb.append(cities[from]).append("-->").append(cities[to]).append(" (cost $").append(e.price()).append(")\n");
+                from = to;
+            }
+            sb.append("Cost: $").append(trip.weight()).append("\n");
+            out.println(sb);
+            return true;
+        });
+    }
+    
+    /* feed up to limit trips that cost max or less to listener, until it returns false,
+       return the number of trips fed */
+    public long getAffordable(double max, long limit, AffordableTrips.Listener listener){
+        return affordableTrips(max, limit).forEach(listener);
+    }
+    
+    /* the trips that cost max or less, at most limit of them, searched on the common pool
+       of one published version; close the stream if it is not read to the end */
+    public AffordableTrips affordableTrips(double max, long limit){
+        return new AffordableTrips(snapshot(), max, limit, ForkJoinPool.commonPool());
+    }
+    
+    /* every city reachable from src for max or less, by distance (option 0), price (option 1)
+       or hops (option 2), mapped to its cheapest route, nearest first; one search that stops at max */
+    public LinkedHashMap<String, Route> reachable(String src, double max, int option){
+        int v = cityIndex.get(src).intValue();
+        CompactGraph G = snapshot();
+        ShortestPath sp = new ShortestPath(G,option,SearchWorkspace.forThread(G.V()));
+        int n = sp.boundedSP(v, max);
+        LinkedHashMap<String, Route> routes = new LinkedHashMap<String, Route>();
+        for(int k = 1; k < n; k++){          // reached(0) is src itself
+            int w = sp.reached(k);
+            routes.put(cities[w], new Route(sp.distTo(w), sp.pathTo(w)));
         }
+        return routes;
+    }
+    
+    /* print every city reachable from src for max or less, with its cheapest route */
+    public void getReachable(String src, double max, int option){
+        int v = cityIndex.get(src).intValue();
+        LinkedHashMap<String, Route> routes = reachable(src, max, option);
+        if(routes.isEmpty()){
+            System.out.println("No city is reachable from "+src+" within the limit");
+            return;
+        }
+        for(String dest : routes.keySet()){
+            Route r = routes.get(dest);
+            StringBuilder sb = new StringBuilder(cities[v]);
+            int from = v;
+            for(Edge e : r.edges()){
+                from = e.other(from);
+                sb.append("-->").append(cities[from]);
+            }
+            if(option == 0)      System.out.println(dest+" ("+r.weight()+" mils): "+sb);
+            else if(option == 1) System.out.println(dest+" (cost $"+r.weight()+"): "+sb);
+            else                 System.out.println(dest+" ("+(int)r.weight()+" hops): "+sb);
+        }
+        System.out.println();
+    }
+    
+    /* the old recursive search from origin, printing as it goes; getAffordable(max) streams instead */
+    public void getAffordable(int origin, int current, double sum, double max, LinkedList<Edge> path,boolean [] marked) {
+        getAffordable(snapshot(),origin,current,sum,max,path,marked);
     }
 
     /* the current path started from vertext "origin" to vertext "current", with total cost = sum 
         all vertices in the current path are marked and can not be used to extend the current path */
-    public void getAffordable(int origin, int current, double sum, double max, LinkedList<Edge> path,boolean [] marked) {
+    private void getAffordable(CompactGraph G, int origin, int current, double sum, double max, LinkedList<Edge> path,boolean [] marked) {
         // stop extending the current path when reach the max cost
         if(sum > max) return;
         
@@ -219,15 +842,16 @@ public class RouteGraph {
         marked[current]=true;
 	
         //  extend the current path by trying all adjacent edges
-        for(Edge e : adj(current)){
-            int next = e.other(current);
+        for(int a = G.begin(current), end = G.end(current); a < end; a++){
+            int next = G.target(a);
             if(!marked[next]){ // only consider un-visited vertices
-                path.add(e);   // extend the current path by add edge e
+                path.add(G.edge(a));   // extend the current path by add edge e
                 // update the total cost, and recursively find new paths starting with next
-                getAffordable(origin,next,sum+e.price(),max,path,marked);
+                getAffordable(G,origin,next,sum+G.price(a),max,path,marked);
                 path.removeLast(); // trace back
             }
         }
+        marked[current]=false;   // free the vertex for other paths on the way back
     } 
     
     /* add a new edge, return false if the edge already exists */
@@ -240,16 +864,79 @@ public class RouteGraph {
     
     /* remove an existing edge, return false if the edge does not exists  */
     public boolean remove(String src, String dest) {
+        return removeEdge(cityIndex.get(src).intValue(), cityIndex.get(dest).intValue());
+    }
+    
+    /* remove the route between cities v and w, return false if there is none */
+    public boolean removeEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        synchronized(lock){
+            materialize();
+            boolean done = store.remove(v, w) != null;
+            if(done){
+                E--;
+                pending = true;            // the published version no longer matches
+                topology++;
+                // landmark bounds stay valid, distances can only grow when a route is removed
+                if(trees != null) trees.removed(v, w);
+                for(DynamicShortestPath d : dynamic) d.removed(v, w);
+                if(schedule != null) schedule = schedule.without(v, w);   // its flights are cancelled
+                changed();
+            }
+            return done;
+        }
+    }
+    
+    /* change the distance and price of an existing route, return false if the route does not exist */
+    public boolean update(String src, String dest, double distance, double price) {
         int v = cityIndex.get(src).intValue();
         int w = cityIndex.get(dest).intValue();
-        Edge e = new Edge(v,w,0,0);  // create a dummy edge
-        boolean done = adj[w].remove(e) && adj[v].remove(e);
-        if(done) edgeIndex.remove(e.key()); // update the edge index
-        return done;
+        Edge e = new Edge(v, w, distance, price);
+        synchronized(lock){
+            materialize();
+            Edge old = store.replace(e);
+            if(old == null) return false;
+            pending = true;            // the published version no longer matches
+            landmarks = null;          // a cheaper route may undercut the landmark bounds
+            if(trees != null){
+                trees.removed(v, w);   // trees that used the old weight
+                trees.added(v, w, distance, price);
+            }
+            for(DynamicShortestPath d : dynamic) d.changed(old, e);
+            changed();
+            return true;
+        }
+    }
+    
+    /* keep the shortest path tree from src up to date through add, remove and update,
+       until it is released; it is changed by the writers, so other threads must not
+       read it while routes are being changed */
+    public DynamicShortestPath maintain(String src, int option) {
+        synchronized(lock){
+            if(pending) publish();     // the tree starts from the current routes
+            DynamicShortestPath d = new DynamicShortestPath(this, cityIndex.get(src).intValue(), option);
+            dynamic.add(d);
+            return d;
+        }
+    }
+    
+    /* stop updating a tree returned by maintain */
+    public void release(DynamicShortestPath d) {
+        synchronized(lock){
+            dynamic.remove(d);
+        }
     }
     
     /* output the current routes information to a file */
     public void write(String filename) {
+        synchronized(lock){
+            writeText(filename);
+        }
+    }
+    
+    private void writeText(String filename) {
+        materialize();
         try{
             // set up output file stream
             FileOutputStream outfile=new FileOutputStream(filename);
@@ -272,6 +959,17 @@ public class RouteGraph {
         }
     }
     
+    /* output the current routes information to a binary route file, see RouteFile */
+    public void writeBinary(String filename) {
+        synchronized(lock){
+            try{
+                RouteFile.writeBinary(pending ? new ArrayGraph(store) : snapshot(), cities, filename);
+            } catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+    }
+    
     // getter
     public int V() {
         return V;
@@ -281,9 +979,22 @@ public class RouteGraph {
         return E;
     }
     
+    /* the live adjacency list of v, for writers; queries use snapshot() */
     public Iterable<Edge> adj(int v) {
         validateVertex(v);
-        return adj[v];
+        materialize();
+        return store.adj(v);
+    }
+    
+    /* return the CSR snapshot of the published routes, it never changes, a change to the routes
+       publishes a new one */
+    public CompactGraph snapshot() {
+        return current.graph;
+    }
+    
+    /* the number of versions published so far, it grows with each change or batch of changes */
+    public long version() {
+        return current.id;
     }
     
     // check if a vertex is valid
@@ -0,0 +1,272 @@
+/*************************************************************************
+ *  Description: parallel parser for the text route format               *
+ *                                                                       *
+ *  The route section of the file is cut into byte ranges that end on    *
+ *  line boundaries, and the ranges are parsed on a fork-join pool into  *
+ *  per-range primitive buffers. Numbers are parsed straight from the    *
+ *  bytes, so no tokenizer, substring or boxed value is created per      *
+ *  line. RouteGraph merges the buffers in file order, which keeps       *
+ *  duplicate detection exactly as in the sequential load.               *
+ *                                                                       *
+ *************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class RouteLoader {
+    private static final int CHUNK = 1 << 22;   // nominal bytes per parse task
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private String[] cities;    // city names from the header
+    private Chunk[] chunks;     // parsed routes, one buffer per byte range, in file order
+
+    /* the routes parsed from one byte range */
+    public static class Chunk {
+        private final long from, to;   // byte range [from, to) in the file
+        private int n;                 // number of routes
+        private int[] v = new int[64];
+        private int[] w = new int[64];
+        private double[] distance = new double[64];
+        private double[] price = new double[64];
+
+        Chunk(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private void add(int v, int w, double distance, double price) {
+            if(n == this.v.length){
+                int cap = 2*n;
+                this.v = java.util.Arrays.copyOf(this.v, cap);
+                this.w = java.util.Arrays.copyOf(this.w, cap);
+                this.distance = java.util.Arrays.copyOf(this.distance, cap);
+                this.price = java.util.Arrays.copyOf(this.price, cap);
+            }
+            this.v[n] = v;
+            this.w[n] = w;
+            this.distance[n] = distance;
+            this.price[n] = price;
+            n++;
+        }
+
+        // getters
+        public int size()               { return n;           }
+        public int v(int i)             { return v[i];        }
+        public int w(int i)             { return w[i];        }
+        public double distance(int i)   { return distance[i]; }
+        public double price(int i)      { return price[i];    }
+    }
+
+    /* parse a text route file using the common fork-join pool */
+    public RouteLoader(String filename) throws IOException {
+        this(filename, ForkJoinPool.commonPool());
+    }
+
+    public RouteLoader(String filename, ForkJoinPool pool) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long start = readHeader(ch);
+            long size = ch.size();
+
+            // cut the route section into ranges that end right after a newline
+            int n = (int)Math.max(1, (size - start + CHUNK - 1) / CHUNK);
+            chunks = new Chunk[n];
+            long from = start;
+            for(int i = 0; i < n; i++){
+                long to = (i == n-1) ? size : nextLine(ch, Math.max(from, start + (long)(i+1)*CHUNK), size);
+                chunks[i] = new Chunk(from, to);
+                from = to;
+            }
+            pool.invoke(new ParseTask(ch, 0, n));
+        } catch(UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    // getters
+    public String[] cities() {
+        return cities;
+    }
+
+    public Chunk[] chunks() {
+        return chunks;
+    }
+
+    // read the vertex count and the city names, return the position of the first route
+    private long readHeader(FileChannel ch) throws IOException {
+        InputStream in = new BufferedInputStream(java.nio.channels.Channels.newInputStream(ch));
+        Charset cs = Charset.defaultCharset();   // same decoding as the sequential reader
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long pos = 0;
+        int V = -1, v = 0;
+        while(V < 0 || v < V){
+            int b = in.read();
+            if(b < 0) throw new EOFException("Route file ends inside the city list");
+            pos++;
+            if(b != '\n'){
+                line.write(b);
+                continue;
+            }
+            String s = stripCR(line.toString(cs.name()));
+            line.reset();
+            if(V < 0){
+                V = Integer.parseInt(s.trim());
+                if(V < 0) throw new IllegalArgumentException("Number of vertices must be nonnegative");
+                cities = new String[V];
+            } else {
+                cities[v++] = s;
+            }
+        }
+        return pos;
+    }
+
+    private static String stripCR(String s) {
+        return s.endsWith("\r") ? s.substring(0, s.length()-1) : s;
+    }
+
+    // position just after the first newline at or after pos
+    private static long nextLine(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while(pos < size){
+            buf.clear();
+            int r = ch.read(buf, pos);
+            if(r <= 0) break;
+            for(int i = 0; i < r; i++)
+                if(buf.get(i) == '\n') return pos + i + 1;
+            pos += r;
+        }
+        return size;
+    }
+
+    /* parse chunks [lo, hi), splitting the work in halves */
+    private class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel ch;
+        private final int lo, hi;
+
+        ParseTask(FileChannel ch, int lo, int hi) {
+            this.ch = ch;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if(hi - lo > 1){
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ParseTask(ch, lo, mid), new ParseTask(ch, mid, hi));
+                return;
+            }
+            try {
+                parse(ch, chunks[lo]);
+            } catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // read a byte range and parse every "v w distance price" line in it
+    private static void parse(FileChannel ch, Chunk c) throws IOException {
+        byte[] b = new byte[(int)(c.to - c.from)];
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while(buf.hasRemaining()){
+            if(ch.read(buf, c.from + buf.position()) < 0) throw new EOFException();
+        }
+
+        int[] p = new int[1];   // cursor shared with the number parsers
+        int n = b.length;
+        while(p[0] < n){
+            skipSeparators(b, p, n);
+            if(p[0] >= n) break;
+            if(b[p[0]] == '\n'){ p[0]++; continue; }   // blank line
+            int v = parseInt(b, p, n) - 1;             // source city index
+            skipSeparators(b, p, n);
+            int w = parseInt(b, p, n) - 1;             // destination city index
+            skipSeparators(b, p, n);
+            double distance = parseDouble(b, p, n);    // distance
+            skipSeparators(b, p, n);
+            double price = parseDouble(b, p, n);       // price
+            c.add(v, w, distance, price);
+            while(p[0] < n && b[p[0]] != '\n') p[0]++; // ignore the rest of the line
+        }
+    }
+
+    // the sequential loader splits tokens on " ,\t"
+    private static void skipSeparators(byte[] b, int[] p, int n) {
+        int i = p[0];
+        while(i < n && (b[i] == ' ' || b[i] == ',' || b[i] == '\t' || b[i] == '\r')) i++;
+        p[0] = i;
+    }
+
+    private static boolean isTokenEnd(byte c) {
+        return c == ' ' || c == ',' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static int parseInt(byte[] b, int[] p, int n) {
+        int i = p[0];
+        boolean neg = i < n && b[i] == '-';
+        if(neg || (i < n && b[i] == '+')) i++;
+        int start = i;
+        long x = 0;
+        while(i < n && b[i] >= '0' && b[i] <= '9'){
+            x = x*10 + (b[i] - '0');
+            if(x > Integer.MAX_VALUE + 1L) throw badNumber(b, p[0], i);
+            i++;
+        }
+        if(i == start || (i < n && !isTokenEnd(b[i]))) throw badNumber(b, p[0], i);
+        p[0] = i;
+        return (int)(neg ? -x : x);
+    }
+
+    /* parse a decimal number without allocating, falling back to Double.parseDouble
+       for exponents and for mantissas too long to be converted exactly */
+    private static double parseDouble(byte[] b, int[] p, int n) {
+        int i = p[0];
+        boolean neg = i < n && b[i] == '-';
+        if(neg || (i < n && b[i] == '+')) i++;
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, exact = true;
+        for(; i < n; i++){
+            byte c = b[i];
+            if(c >= '0' && c <= '9'){
+                if(mantissa < (1L << 53) / 10){
+                    mantissa = mantissa*10 + (c - '0');
+                    if(dot) scale++;
+                } else {
+                    exact = false;
+                }
+                digits++;
+            } else if(c == '.' && !dot){
+                dot = true;
+            } else break;
+        }
+        if(i < n && !isTokenEnd(b[i])) exact = false;   // exponent or other syntax
+        if(exact && digits > 0 && scale < POW10.length){
+            p[0] = i;
+            double x = scale == 0 ? mantissa : mantissa / POW10[scale];
+            return neg ? -x : x;
+        }
+
+        // slow path for anything unusual
+        int end = i;
+        while(end < n && !isTokenEnd(b[end])) end++;
+        String token = new String(b, p[0], end - p[0], StandardCharsets.ISO_8859_1);
+        p[0] = end;
+        return Double.parseDouble(token);
+    }
+
+    private static NumberFormatException badNumber(byte[] b, int from, int to) {
+        int end = to;
+        while(end < b.length && !isTokenEnd(b[end])) end++;
+        return new NumberFormatException("For input string: \""+new String(b, from, end-from, StandardCharsets.ISO_8859_1)+"\"");
+    }
+}
@@ -0,0 +1,71 @@
+/*************************************************************************
+ *  Description: vertices and arcs a search must not use, e.g. the spur  *
+ *               searches of KShortestPaths                              *
+ *                                                                       *
+ *  The routes themselves are never touched. A blocked vertex or arc is  *
+ *  stamped with the current epoch, so clear() takes O(1) and masks can  *
+ *  be reused from one search to the next. A mask must only be used by   *
+ *  one thread; forThread hands out one per thread.                      *
+ *                                                                       *
+ *************************************************************************/
+
+public class RouteMask {
+    private static final ThreadLocal<RouteMask> local = new ThreadLocal<RouteMask>();
+
+    private final int V;            // number of vertices it can hold
+    private final int A;            // number of arcs it can hold
+    private int epoch;
+    private final int[] vertex;     // vertex[v] == epoch if v is blocked
+    private final int[] arc;        // arc[a] == epoch if a is blocked
+
+    /* a mask of V vertices and A arcs, nothing blocked */
+    public RouteMask(int V, int A){
+        if (V < 0 || A < 0) throw new IllegalArgumentException("Number of vertices and arcs must be nonnegative");
+        this.V = V;
+        this.A = A;
+        vertex = new int[V];
+        arc = new int[A];
+        epoch = 1;
+    }
+
+    /* return the mask of the calling thread, cleared and grown to hold at least V vertices and A arcs */
+    public static RouteMask forThread(int V, int A){
+        RouteMask m = local.get();
+        if (m == null || m.V < V || m.A < A) {
+            m = new RouteMask(Math.max(V, m == null ? 0 : m.V), Math.max(A, m == null ? 0 : m.A));
+            local.set(m);
+        }
+        m.clear();
+        return m;
+    }
+
+    /* unblock everything */
+    public void clear(){
+        if (++epoch == Integer.MAX_VALUE) {   // wrap around, clear the stamps once
+            java.util.Arrays.fill(vertex, 0);
+            java.util.Arrays.fill(arc, 0);
+            epoch = 1;
+        }
+    }
+
+    public void blockVertex(int v) {
+        vertex[v] = epoch;
+    }
+
+    public void blockArc(int a) {
+        arc[a] = epoch;
+    }
+
+    public boolean blockedVertex(int v) {
+        return vertex[v] == epoch;
+    }
+
+    public boolean blockedArc(int a) {
+        return arc[a] == epoch;
+    }
+
+    // true if a search may not take arc a into vertex w
+    public boolean blocked(int a, int w) {
+        return arc[a] == epoch || vertex[w] == epoch;
+    }
+}
@@ -0,0 +1,124 @@
+/*************************************************************************
+ *  Description: reusable scratch arrays for shortest path searches      *
+ *                                                                       *
+ *  A label (distance and last arc) of vertex v only counts if it was    *
+ *  written during the current search, which is checked by comparing a   *
+ *  stamp with the search epoch. Starting a new search just increments   *
+ *  the epoch, so no O(V) clearing is needed and the cost of a query     *
+ *  depends only on the part of the graph it touches.                    *
+ *                                                                       *
+ *  There are two sets of labels, side 0 for forward searches and side  *
+ *  1 for the backward half of a bidirectional search. A workspace must  *
+ *  only be used by one thread; forThread hands out one per thread.      *
+ *                                                                       *
+ *************************************************************************/
+
+public class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> local = new ThreadLocal<SearchWorkspace>();
+
+    private final int V;                // number of vertices it can hold
+    private int epoch;                  // id of the current search
+    private final double[][] dist = new double[2][];  // dist[side][v] = distance label
+    private final int[][] edge = new int[2][];        // edge[side][v] = last arc, -1 if none
+    private final int[][] stamp = new int[2][];       // labels are valid if stamp[side][v] == epoch
+    private final IndexPQ[] pq = new IndexPQ[2];
+    private final IndexPQ.Factory[] made = new IndexPQ.Factory[2]; // made[side] created pq[side]
+    private final int[] mark;           // mark[v] == epoch if v is marked
+    private int[] queue;                // BFS queue, allocated on first use
+
+    /* constructor */
+    public SearchWorkspace(int V){
+        if (V < 0) throw new IllegalArgumentException("Number of vertices must be nonnegative");
+        this.V = V;
+        mark = new int[V];
+        allocate(0);
+        epoch = 1;
+    }
+
+    /* return the workspace of the calling thread, grown to hold at least V vertices */
+    public static SearchWorkspace forThread(int V){
+        SearchWorkspace ws = local.get();
+        if (ws == null || ws.V < V) {
+            ws = new SearchWorkspace(V);
+            local.set(ws);
+        }
+        return ws;
+    }
+
+    private void allocate(int side){
+        dist[side] = new double[V];
+        edge[side] = new int[V];
+        stamp[side] = new int[V];
+    }
+
+    /* forget all labels and marks, and empty the queues */
+    public void begin(){
+        if (++epoch == Integer.MAX_VALUE) {   // wrap around, clear the stamps once
+            for (int side = 0; side < 2; side++)
+                if (stamp[side] != null) java.util.Arrays.fill(stamp[side], 0);
+            java.util.Arrays.fill(mark, 0);
+            epoch = 1;
+        }
+        for (int side = 0; side < 2; side++)
+            if (pq[side] != null) pq[side].clear();
+    }
+
+    public int V() {
+        return V;
+    }
+
+    public double dist(int side, int v) {
+        return stamp[side][v] == epoch ? dist[side][v] : Double.POSITIVE_INFINITY;
+    }
+
+    public int edge(int side, int v) {
+        return stamp[side][v] == epoch ? edge[side][v] : -1;
+    }
+
+    public boolean labeled(int side, int v) {
+        return stamp[side][v] == epoch;
+    }
+
+    // set the distance and last arc of v
+    public void label(int side, int v, double d, int a) {
+        stamp[side][v] = epoch;
+        dist[side][v] = d;
+        edge[side][v] = a;
+    }
+
+    public IndexPQ pq(int side) {
+        return pq(side, IndexPQ.BINARY);
+    }
+
+    /* the queue of a side, made by factory; it is kept while the same factory is asked for */
+    public IndexPQ pq(int side, IndexPQ.Factory factory) {
+        use(side);
+        if (made[side] != factory) {
+            pq[side] = factory.create(V);
+            made[side] = factory;
+        }
+        return pq[side];
+    }
+
+    // make sure the labels of a side exist before they are read
+    public void use(int side) {
+        if (stamp[side] == null) allocate(side);
+    }
+
+    public boolean marked(int v) {
+        return mark[v] == epoch;
+    }
+
+    public void mark(int v) {
+        mark[v] = epoch;
+    }
+
+    public void unmark(int v) {
+        mark[v] = 0;
+    }
+
+    public int[] queue() {
+        if (queue == null) queue = new int[V];
+        return queue;
+    }
+}
@@ -4,93 +4,404 @@
  *               option 1 - price    - Dijkstra's algorithm              *
  *               option 2 - hops     - BFS algorithm                     *
  *                                                                       *
+ *  Labels live in a SearchWorkspace. A ShortestPath built without one   *
+ *  owns its workspace and keeps its results; one built on a shared      *
+ *  workspace (e.g. SearchWorkspace.forThread) allocates nothing per     *
+ *  query, but its results are only valid until the workspace is used    *
+ *  by the next search.                                                  *
+ *                                                                       *
  *************************************************************************/
 
 import java.util.LinkedList;
 import java.util.Deque;
 
 public class ShortestPath {
-    private Edge[] edgeTo;        // edgeTo[v] = shortest edge from tree vertex to non-tree vertex
-    private double[] distTo;      // distTo[v] = weight of shortest such edge
-    private boolean[] marked;     // marked[v] = true if v on tree, false otherwise
-    private IndexMinPQ pq;
+    private static final int FWD = 0;   // workspace side of the forward search
+    private static final int BWD = 1;   // workspace side of the backward search
+
+    private SearchWorkspace ws;   // distance labels, last arcs (-1 if none), marks and queues
+    private double best;          // length of the best path found by the bidirectional search
+    private int meet;             // vertex where that path crosses from the forward to the backward tree
     private int option;
-    private RouteGraph G;
-    
+    private CompactGraph G;       // CSR snapshot of the route graph
+    private IndexPQ.Factory queue = IndexPQ.BINARY; // kind of priority queue the searches use
+    private RouteMask mask;       // vertices and arcs the Dijkstra and A* searches skip, null if none
+
     /* constructor */
     public ShortestPath(RouteGraph G, int option){
+        this(G, option, new SearchWorkspace(G.V()));
+    }
+
+    /* constructor using a shared workspace, which is reset for this search */
+    public ShortestPath(RouteGraph G, int option, SearchWorkspace ws){
+        this(G.snapshot(), option, ws);
+    }
+
+    /* constructor searching a given snapshot, e.g. one version of a graph that keeps changing */
+    public ShortestPath(CompactGraph G, int option, SearchWorkspace ws){
         this.G = G;
         this.option = option;
-        edgeTo = new Edge[G.V()];
-        distTo = new double[G.V()];
-        marked = new boolean[G.V()];
-        for (int v = 0; v < G.V(); v++)
-            distTo[v] = Double.POSITIVE_INFINITY;
+        if (ws.V() < G.V()) throw new IllegalArgumentException("Workspace holds fewer than " + G.V() + " vertices");
+        this.ws = ws;
+        ws.begin();
+    }
+
+    /* choose the priority queue of the following searches, see IndexPQ; a radix queue
+       needs weights that are whole multiples of its unit and does not suit astarSP */
+    public ShortestPath useQueue(IndexPQ.Factory queue){
+        this.queue = queue;
+        return this;
+    }
+
+    /* skip the vertices and arcs blocked in mask in the following Dijkstra and A* searches
+       (not in bidirectionalSP or the BFS searches), null to use every route */
+    public ShortestPath useMask(RouteMask mask){
+        this.mask = mask;
+        return this;
     }
 
     /* run Dijkstra's algorithm to find the shortest path by distance or price */
     public void dijkstraSP(int s){
-        pq = new IndexMinPQ(G.V());        // a priority queue of vertices
-        distTo[s] = 0;
-        pq.insert(s, distTo[s]);           // add s to the PQ
+        dijkstraSP(s, -1);
+    }
+
+    /* run Dijkstra's algorithm from s, but stop as soon as t is settled,
+       only distTo(t) and pathTo(t) are final afterwards */
+    public void dijkstraSP(int s, int t){
+        IndexPQ pq = ws.pq(FWD, queue);        // a priority queue of vertices
+        ws.label(FWD, s, 0, -1);
+        pq.insert(s, 0);                   // add s to the PQ
         while(!pq.isEmpty()){
             int v = pq.delMin();           // find and remove the min vertex
-            for (Edge e : G.adj(v))        // scan all adj edges
-                relax(e, v);
+            if(v == t) break;              // t is settled, no shorter path can appear
+            double dv = ws.dist(FWD, v);
+            for (int a = G.begin(v), end = G.end(v); a < end; a++) // scan all adj arcs
+                relax(pq, a, dv, FWD);
+        }
+    }
+
+    /* run Dijkstra's algorithm from s until every vertex in targets is settled,
+       only distTo and pathTo of the targets are final afterwards */
+    public void dijkstraSP(int s, int[] targets){
+        int left = markAll(targets);       // targets not settled yet
+        IndexPQ pq = ws.pq(FWD, queue);
+        ws.label(FWD, s, 0, -1);
+        pq.insert(s, 0);
+        while(!pq.isEmpty() && left > 0){
+            int v = pq.delMin();
+            if(ws.marked(v)){ ws.unmark(v); left--; }
+            double dv = ws.dist(FWD, v);
+            for (int a = G.begin(v), end = G.end(v); a < end; a++)
+                relax(pq, a, dv, FWD);
+        }
+    }
+
+    // mark the distinct vertices of targets and return their number
+    private int markAll(int[] targets) {
+        int n = 0;
+        for (int t : targets)
+            if (!ws.marked(t)) { ws.mark(t); n++; }
+        return n;
+    }
+
+    // relax arc a leaving a vertex at distance dv, and update pq if changed
+    private void relax(IndexPQ pq, int a, double dv, int side) {
+        int w = G.target(a);
+        if (mask != null && mask.blocked(a, w)) return;
+        double d = dv + G.weight(a, option);
+        if (ws.dist(side, w) > d) {
+            ws.label(side, w, d, a);
+            if (pq.contains(w)) pq.decreaseKey(w, d);
+            else                pq.insert(w, d);
+        }
+    }
+
+    /* find every vertex within budget of s, by Dijkstra's algorithm (or BFS for hops) that
+       never labels a vertex past the budget, and return their number, s included;
+       distTo and pathTo are final for these vertices, and reached(k) lists them by distance */
+    public int boundedSP(int s, double budget){
+        int[] q = ws.queue();              // the vertices in the order they are settled
+        int n = 0;
+        if(budget < 0) return 0;
+        ws.label(FWD, s, 0, -1);
+        if(option == 2){
+            q[n++] = s;
+            for(int head = 0; head < n; head++){
+                int v = q[head];
+                double dv = ws.dist(FWD, v);
+                if(dv + 1 > budget) break; // the rest of the queue is as far as v
+                for(int a = G.begin(v), end = G.end(v); a < end; a++){
+                    int w = G.target(a);
+                    if(!ws.labeled(FWD, w)){
+                        ws.label(FWD, w, dv+1, a);
+                        q[n++] = w;
+                    }
+                }
+            }
+            return n;
         }
+        IndexPQ pq = ws.pq(FWD, queue);
+        pq.insert(s, 0);
+        while(!pq.isEmpty()){
+            int v = pq.delMin();
+            q[n++] = v;
+            double dv = ws.dist(FWD, v);
+            for (int a = G.begin(v), end = G.end(v); a < end; a++){
+                if(dv + G.weight(a, option) <= budget) relax(pq, a, dv, FWD);
+            }
+        }
+        return n;
+    }
+
+    /* the k-th vertex settled by the last boundedSP, in order of distance */
+    public int reached(int k) {
+        return ws.queue()[k];
     }
-    
-    // relax edge e and update pq if changed
-    private void relax(Edge e, int v) {
-        int w = e.other(v);
-        if (distTo[w] > distTo[v] + e.weight(option)) {
-            distTo[w] = distTo[v] + e.weight(option);
-            edgeTo[w] = e;
-            if (pq.contains(w)) pq.decreaseKey(w, distTo[w]);
-            else                pq.insert(w, distTo[w]);
+
+    /* run A* search from s to t, using landmark lower bounds as the heuristic (ALT),
+       only distTo(t) and pathTo(t) are final afterwards */
+    public void astarSP(int s, int t, Landmarks L){
+        double[] target = L.target(t, option);
+        IndexPQ pq = ws.pq(FWD, queue);
+        ws.label(FWD, s, 0, -1);
+        pq.insert(s, L.lowerBound(s, target, option));
+        while(!pq.isEmpty()){
+            int v = pq.delMin();
+            if(v == t) break;
+            double dv = ws.dist(FWD, v);
+            for (int a = G.begin(v), end = G.end(v); a < end; a++){
+                int w = G.target(a);
+                if (mask != null && mask.blocked(a, w)) continue;
+                double d = dv + G.weight(a, option);
+                double dw = ws.dist(FWD, w);
+                if (dw > d) {
+                    double h = L.lowerBound(w, target, option);
+                    double old = dw + h;           // the key w is queued with, if any
+                    ws.label(FWD, w, d, a);
+                    if (pq.contains(w)) { if (d + h < old) pq.decreaseKey(w, d + h); }
+                    else if (h < Double.POSITIVE_INFINITY) pq.insert(w, d + h);
+                }
+            }
+        }
+    }
+
+    /* run A* search from s to t, with h[v] a consistent lower bound on the weight from v to t,
+       e.g. the exact weights of an unmasked search from t when a mask only takes routes away */
+    public void astarSP(int s, int t, double[] h){
+        IndexPQ pq = ws.pq(FWD, queue);
+        ws.label(FWD, s, 0, -1);
+        if(h[s] == Double.POSITIVE_INFINITY) return;
+        pq.insert(s, h[s]);
+        while(!pq.isEmpty()){
+            int v = pq.delMin();
+            if(v == t) break;
+            double dv = ws.dist(FWD, v);
+            for (int a = G.begin(v), end = G.end(v); a < end; a++){
+                int w = G.target(a);
+                if (mask != null && mask.blocked(a, w)) continue;
+                double d = dv + G.weight(a, option);
+                double dw = ws.dist(FWD, w);
+                if (dw > d && h[w] < Double.POSITIVE_INFINITY) {
+                    double old = dw + h[w];        // the key w is queued with, if any
+                    ws.label(FWD, w, d, a);
+                    if (pq.contains(w)) { if (d + h[w] < old) pq.decreaseKey(w, d + h[w]); }
+                    else                pq.insert(w, d + h[w]);
+                }
+            }
+        }
+    }
+
+    /* the same, where next[v] is the arc from v towards t on a tree of shortest paths into t
+       (-1 at t) whose weights are h: the search stops at the first vertex it settles whose tree
+       path to t is not masked, and follows the tree from there, since no path can be shorter */
+    public void astarSP(int s, int t, double[] h, int[] next){
+        IndexPQ pq = ws.pq(FWD, queue);
+        ws.label(FWD, s, 0, -1);
+        if(h[s] == Double.POSITIVE_INFINITY) return;
+        pq.insert(s, h[s]);
+        while(!pq.isEmpty()){
+            int v = pq.delMin();
+            if(open(v, t, next)){
+                for(int x = v; x != t; x = G.target(next[x]))
+                    ws.label(FWD, G.target(next[x]), ws.dist(FWD, x) + G.weight(next[x], option), next[x]);
+                break;
+            }
+            double dv = ws.dist(FWD, v);
+            for (int a = G.begin(v), end = G.end(v); a < end; a++){
+                int w = G.target(a);
+                if (mask != null && mask.blocked(a, w)) continue;
+                double d = dv + G.weight(a, option);
+                double dw = ws.dist(FWD, w);
+                if (dw > d && h[w] < Double.POSITIVE_INFINITY) {
+                    double old = dw + h[w];        // the key w is queued with, if any
+                    ws.label(FWD, w, d, a);
+                    if (pq.contains(w)) { if (d + h[w] < old) pq.decreaseKey(w, d + h[w]); }
+                    else                pq.insert(w, d + h[w]);
+                }
+            }
+        }
+    }
+
+    // true if the tree path from v to t uses no masked vertex or arc
+    private boolean open(int v, int t, int[] next) {
+        for (int x = v; x != t; ) {
+            int a = next[x];
+            x = G.target(a);
+            if (mask != null && mask.blocked(a, x)) return false;
+        }
+        return true;
+    }
+
+    /* run Dijkstra's algorithm forward from s and backward from t at the same time,
+       stopping when the two frontiers meet, only distTo(t) and pathTo(t) are final afterwards */
+    public void bidirectionalSP(int s, int t){
+        IndexPQ fq = ws.pq(FWD, queue);              // forward frontier
+        IndexPQ bq = ws.pq(BWD, queue);              // backward frontier
+        ws.label(FWD, s, 0, -1);
+        fq.insert(s, 0);
+        ws.label(BWD, t, 0, -1);
+        bq.insert(t, 0);
+        best = s == t ? 0 : Double.POSITIVE_INFINITY;
+        meet = s == t ? s : -1;
+
+        // expand the side with the smaller key until no path through the frontiers can beat best
+        while(!fq.isEmpty() && !bq.isEmpty() && fq.minKey() + bq.minKey() < best){
+            if(fq.minKey() <= bq.minKey()) expand(fq, FWD, BWD);
+            else                           expand(bq, BWD, FWD);
+        }
+        if(meet != -1) splice(s);
+    }
+
+    // settle the min vertex of q and relax its arcs, recording any better meeting point
+    private void expand(IndexPQ q, int side, int other) {
+        int v = q.delMin();
+        double dv = ws.dist(side, v);
+        for (int a = G.begin(v), end = G.end(v); a < end; a++){
+            int w = G.target(a);
+            double d = dv + G.weight(a, option);
+            if (ws.dist(side, w) > d) {
+                ws.label(side, w, d, a);
+                if (q.contains(w)) q.decreaseKey(w, d);
+                else               q.insert(w, d);
+                double total = d + ws.dist(other, w);
+                if (total < best) {
+                    best = total;
+                    meet = w;
+                }
+            }
+        }
+    }
+
+    // append the backward tree path from meet to t to the forward tree, so pathTo(t) works as usual
+    private void splice(int s) {
+        // mark the forward path s -> meet
+        for (int v = meet; v != s; v = G.other(ws.edge(FWD, v), v))
+            ws.mark(v);
+        ws.mark(s);
+
+        // with zero-weight routes the backward path may run back into the forward path,
+        // continue from the last vertex they share so that no cycle is written into the forward tree
+        int from = meet;
+        for (int v = meet; ws.edge(BWD, v) != -1; ){
+            v = G.other(ws.edge(BWD, v), v);
+            if (ws.marked(v)) from = v;
+        }
+        for (int v = meet; v != s; v = G.other(ws.edge(FWD, v), v))
+            ws.unmark(v);
+        ws.unmark(s);
+
+        for (int v = from; ws.edge(BWD, v) != -1; ){
+            int a = ws.edge(BWD, v);
+            int w = G.other(a, v);
+            ws.label(FWD, w, ws.dist(FWD, v) + G.weight(a, option), a);
+            v = w;
         }
     }
 
     /* run BFS algorithm to find the shortest path by number of hops */
     public void bfsSP(int s){
-        LinkedList<Integer> q = new LinkedList<Integer>(); // a queue of vertex
-        distTo[s] = 0;
-        marked[s] = true;
-        q.add(s);
-	
-        while(!q.isEmpty()){
-            int v = q.poll(); // retrieve and remove the head
-            for(Edge e : G.adj(v)){        // scan all adjacent edges
-                int w = e.other(v);
-                if(!marked[w]){
-                    edgeTo[w]=e;           // find a shortest edge
-                    distTo[w]=distTo[v]+1; // increase hops number by 1
-                    marked[w]=true;
-                    q.add(w);
+        int[] q = ws.queue();     // a queue of vertex, each vertex enters it at most once
+        int head = 0, tail = 0;
+        ws.label(FWD, s, 0, -1);
+        q[tail++] = s;
+
+        while(head < tail){
+            int v = q[head++];    // retrieve and remove the head
+            double dv = ws.dist(FWD, v);
+            for(int a = G.begin(v), end = G.end(v); a < end; a++){ // scan all adjacent arcs
+                int w = G.target(a);
+                if(!ws.labeled(FWD, w)){
+                    ws.label(FWD, w, dv+1, a); // find a shortest edge, increase hops number by 1
+                    q[tail++] = w;
+                }
+            }
+        }
+    }
+
+    /* run BFS algorithm from s until every vertex in targets is reached */
+    public void bfsSP(int s, int[] targets){
+        int left = markAll(targets);
+        int[] q = ws.queue();
+        int head = 0, tail = 0;
+        ws.label(FWD, s, 0, -1);
+        if(ws.marked(s)){ ws.unmark(s); left--; }
+        q[tail++] = s;
+
+        while(head < tail && left > 0){
+            int v = q[head++];
+            double dv = ws.dist(FWD, v);
+            for(int a = G.begin(v), end = G.end(v); a < end; a++){
+                int w = G.target(a);
+                if(!ws.labeled(FWD, w)){
+                    ws.label(FWD, w, dv+1, a);
+                    if(ws.marked(w)){ ws.unmark(w); left--; }
+                    q[tail++] = w;
                 }
             }
         }
     }
 
     public double distTo(int v) {
-        return distTo[v];
+        return ws.dist(FWD, v);
+    }
+
+    /* last arc of the shortest path to v in graph(), -1 if none */
+    public int edgeTo(int v) {
+        return ws.edge(FWD, v);
     }
 
     public boolean hasPathTo(int v) {
-        return distTo[v] < Double.POSITIVE_INFINITY;
+        return ws.dist(FWD, v) < Double.POSITIVE_INFINITY;
     }
 
     // return the shortest path as a stack of edges
     public Iterable<Edge> pathTo(int v) {
         if (!hasPathTo(v)) return null;
         Deque<Edge> path = new LinkedList<Edge>();
-        Edge e = edgeTo[v];
-        int from = e.other(v);
-        path.push(e);
-        while((e=edgeTo[from]) != null){
-            path.push(e);
-            from = e.other(from);
+        int a;
+        while((a=ws.edge(FWD, v)) != -1){
+            path.push(G.edge(a));
+            v = G.other(a, v);
         }
         return path;
     }
+
+    /* write the arcs of the shortest path to v into arcs, in travel order, and return their number,
+       or -1 if there is no path; throws if arcs is too short */
+    public int pathTo(int v, int[] arcs) {
+        if (!hasPathTo(v)) return -1;
+        int n = 0;
+        for (int x = v, a; (a=ws.edge(FWD, x)) != -1; x = G.other(a, x))
+            n++;
+        if (n > arcs.length) throw new IllegalArgumentException("Path has " + n + " arcs, buffer holds " + arcs.length);
+        int i = n;
+        for (int x = v, a; (a=ws.edge(FWD, x)) != -1; x = G.other(a, x))
+            arcs[--i] = a;
+        return n;
+    }
+
+    // the snapshot the arc ids returned by pathTo(v, arcs) refer to
+    public CompactGraph graph() {
+        return G;
+    }
 }
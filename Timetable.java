@@ -0,0 +1,130 @@
+/*************************************************************************
+ *  Description: timed flights on the routes, read by ConnectionScan     *
+ *                                                                       *
+ *  A flight (connection) leaves one city at a departure time and lands  *
+ *  in the other at a later arrival time, both in minutes from the start *
+ *  of the schedule. All flights are kept in one flat int[] sorted by    *
+ *  departure, four ints per flight (departure, arrival, from, to), so a *
+ *  query reads them in one sequential pass. A timetable is immutable.   *
+ *                                                                       *
+ *  File format (e.g. data.schedule next to data.txt): one flight per    *
+ *  line, "from to departure arrival", the cities numbered as in the     *
+ *  routes file and the times as hh:mm, with hours past 24 for the       *
+ *  following days (25:30 is 1:30 the next day); blank lines and lines   *
+ *  starting with # are skipped.                                         *
+ *                                                                       *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class Timetable {
+    public static final int DEPARTURE = 0, ARRIVAL = 1, FROM = 2, TO = 3;   // fields of a flight
+    private static final int STRIDE = 4;
+
+    private final int V;             // number of cities
+    private final int n;             // number of flights
+    private final int[] c;           // flight i is c[STRIDE*i .. STRIDE*i+3], by departure
+
+    /* the flights from[i] -> to[i], leaving at departure[i] and landing at arrival[i], for i < n */
+    public Timetable(int V, int n, int[] from, int[] to, int[] departure, int[] arrival) {
+        if (n < 0) throw new IllegalArgumentException("Number of flights must be nonnegative");
+        this.V = V;
+        this.n = n;
+        for (int i = 0; i < n; i++) {
+            if (from[i] < 0 || from[i] >= V || to[i] < 0 || to[i] >= V)
+                throw new IndexOutOfBoundsException("Flight " + i + " is not between cities 0 and " + (V-1));
+            if (from[i] == to[i]) throw new IllegalArgumentException("Flight " + i + " lands where it left");
+            if (arrival[i] <= departure[i]) throw new IllegalArgumentException("Flight " + i + " lands before it leaves");
+        }
+
+        // sort by departure, ties in the given order
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = (long) departure[i] << 32 | (long) i;
+        Arrays.sort(keys);
+        c = new int[STRIDE * n];
+        for (int k = 0; k < n; k++) {
+            int i = (int) keys[k];
+            c[STRIDE*k + DEPARTURE] = departure[i];
+            c[STRIDE*k + ARRIVAL] = arrival[i];
+            c[STRIDE*k + FROM] = from[i];
+            c[STRIDE*k + TO] = to[i];
+        }
+    }
+
+    private Timetable(int V, int n, int[] c) {
+        this.V = V;
+        this.n = n;
+        this.c = c;
+    }
+
+    public int V() {
+        return V;
+    }
+
+    /* number of flights */
+    public int size() {
+        return n;
+    }
+
+    public int departure(int i) {
+        return c[STRIDE*i + DEPARTURE];
+    }
+
+    public int arrival(int i) {
+        return c[STRIDE*i + ARRIVAL];
+    }
+
+    public int from(int i) {
+        return c[STRIDE*i + FROM];
+    }
+
+    public int to(int i) {
+        return c[STRIDE*i + TO];
+    }
+
+    /* the flat flight array, read only: flight i starts at STRIDE*i, see DEPARTURE .. TO */
+    public int[] flights() {
+        return c;
+    }
+
+    /* index of the first flight leaving at time or later, size() if there is none */
+    public int first(int time) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c[STRIDE*mid + DEPARTURE] < time) lo = mid + 1;
+            else                                   hi = mid;
+        }
+        return lo;
+    }
+
+    /* the same flights, without those between v and w in either direction */
+    public Timetable without(int v, int w) {
+        int[] kept = new int[c.length];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int f = from(i), t = to(i);
+            if ((f == v && t == w) || (f == w && t == v)) continue;
+            System.arraycopy(c, STRIDE*i, kept, STRIDE*m, STRIDE);
+            m++;
+        }
+        return new Timetable(V, m, Arrays.copyOf(kept, STRIDE*m));
+    }
+
+    /* minutes from the start of the schedule for hh:mm */
+    public static int parse(String time) {
+        int colon = time.indexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Time " + time + " is not hh:mm");
+        int h = Integer.parseInt(time.substring(0, colon)), m = Integer.parseInt(time.substring(colon + 1));
+        if (h < 0 || m < 0 || m >= 60) throw new IllegalArgumentException("Time " + time + " is not hh:mm");
+        return 60*h + m;
+    }
+
+    /* hh:mm for minutes from the start of the schedule, with the day after it from the second day on */
+    public static String format(int time) {
+        int day = time / (24*60), h = time / 60 % 24, m = time % 60;
+        String s = String.format("%02d:%02d", h, m);
+        return day == 0 ? s : s + " (+" + day + ")";
+    }
+}
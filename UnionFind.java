@@ -0,0 +1,50 @@
+/*************************************************************************
+ *  Description: disjoint sets of the vertices 0 .. n-1, union by size   *
+ *               and path compression (halving)                          *
+ *                                                                       *
+ *************************************************************************/
+
+public class UnionFind {
+    private final int[] parent;   // parent[v] = parent of v, v itself at a root
+    private final int[] size;     // size[r] = number of vertices in the set of root r
+    private int count;            // number of sets
+
+    public UnionFind(int n) {
+        if (n < 0) throw new IllegalArgumentException("Number of elements must be nonnegative");
+        parent = new int[n];
+        size = new int[n];
+        for (int v = 0; v < n; v++) {
+            parent[v] = v;
+            size[v] = 1;
+        }
+        count = n;
+    }
+
+    // the root of the set of v
+    public int find(int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];   // point v at its grandparent on the way up
+            v = parent[v];
+        }
+        return v;
+    }
+
+    public boolean connected(int v, int w) {
+        return find(v) == find(w);
+    }
+
+    // merge the sets of v and w, return false if they were one set already
+    public boolean union(int v, int w) {
+        int rv = find(v), rw = find(w);
+        if (rv == rw) return false;
+        if (size[rv] < size[rw]) { int t = rv; rv = rw; rw = t; }
+        parent[rw] = rv;
+        size[rv] += size[rw];
+        count--;
+        return true;
+    }
+
+    public int count() {
+        return count;
+    }
+}